@@ -5,6 +5,7 @@ package com.myscript.iink.demo
 import android.annotation.SuppressLint
 import android.content.Context
 import android.content.Intent
+import android.graphics.Color
 import android.graphics.PointF
 import android.net.Uri
 import android.os.Bundle
@@ -62,12 +63,19 @@ import com.myscript.iink.demo.util.launchSingleChoiceDialog
 import com.myscript.iink.demo.util.launchTextBlockInputDialog
 import com.myscript.iink.uireferenceimplementation.EditorView
 import com.myscript.iink.uireferenceimplementation.FrameTimeEstimator
+import com.myscript.iink.uireferenceimplementation.FrameTimeTracker
 import com.myscript.iink.uireferenceimplementation.IInputControllerListener
+import com.myscript.iink.uireferenceimplementation.InputController
+import com.myscript.iink.uireferenceimplementation.LatencyTracker
+import com.myscript.iink.uireferenceimplementation.PolynomialMotionPredictor
+import com.myscript.iink.uireferenceimplementation.SampleDecimator
 import com.myscript.iink.uireferenceimplementation.SmartGuideView
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import java.io.File
+import java.io.FileDescriptor
+import java.io.PrintWriter
 import kotlin.math.roundToInt
 
 suspend fun Context.processUriFile(uri: Uri, file: File, logic: (File) -> Unit) {
@@ -160,16 +168,36 @@ class MainActivity : AppCompatActivity() {
         override fun onNothingSelected(parent: AdapterView<*>?) = Unit
     }
     private var addImagePosition: PointF? = null
+    private val latencyTracker = LatencyTracker()
+    private var lastStrokeLatency: String? = null
+    private var firstStrokeLatency: String? = null
+    private var inputController: InputController? = null
+    private val sampleDecimator = SampleDecimator(0.1f, 10f, 0.05f)
+    private var frameTimeTracker: FrameTimeTracker? = null
+    // the prediction duration follows the frame time, until explicitly set by the user
+    private var isPredictionDurationAdaptive = true
 
     private companion object {
         const val EnableCapturePredictionByDefault: Boolean = true
         const val DefaultMinimumPredictionDurationMs: Int = 16 // 1 frame @60Hz, 2 frames @120Hz
-    }
+        // predictions get less accurate further ahead
+        const val MaximumPredictionDurationMs: Int = 50
+        // predicts strokes on the client side instead of the engine, its accuracy is reported in the `dumpsys` output
+        const val EnableClientMotionPrediction: Boolean = false
+        const val ClientPredictionWidthMm: Float = 0.65f
+    }
+
+    private val onEditorInput = object : IInputControllerListener {
+        override fun onLongPress(x: Float, y: Float, contentBlockId: String?): Boolean {
+            val actionState = viewModel.requestContentBlockActions(x, y)
+            showContextualActionDialog(actionState)
+            return true
+        }
 
-    private val onEditorLongPress = IInputControllerListener { x, y, _ ->
-        val actionState = viewModel.requestContentBlockActions(x, y)
-        showContextualActionDialog(actionState)
-        true
+        override fun onStrokeStart() {
+            // measure the frame time while the stroke is rendered
+            frameTimeTracker?.sample()
+        }
     }
 
     private val onSmartGuideMenuAction = SmartGuideView.MenuListener { x, y, blockId ->
@@ -279,17 +307,41 @@ class MainActivity : AppCompatActivity() {
 
         // extra brushes (if any) must be set prior to editor binding
         editorView?.extraBrushConfigs = IInkApplication.DemoModule.extraBrushes
+        // render content around the viewport during idle time to smooth scrolling
+        editorView?.setPrefetchMargin(resources.getDimensionPixelSize(R.dimen.editor_prefetch_margin))
+        // cache model and capture layers so that writing only repaints the newest stroke segment
+        editorView?.setLayerCacheEnabled(true)
+        // measure pen-to-pixel latency, see `adb shell dumpsys activity com.myscript.iink.demo/.MainActivity`
+        latencyTracker.setListener { strokeLatencies ->
+            lastStrokeLatency = strokeLatencies.toString()
+            if (firstStrokeLatency == null) {
+                firstStrokeLatency = lastStrokeLatency
+            }
+            frameTimeTracker?.let { onFrameTimeChanged(it.frameTime) }
+        }
+        editorView?.setLatencyTracker(latencyTracker)
 
-        val editorData = editorBinding.openEditor(editorView)
-        editorData.inputController?.listener = onEditorLongPress
+        // track refresh rate switches and missed frames to adapt the prediction duration
+        frameTimeTracker = FrameTimeTracker(editorView?.context ?: this, ::onFrameTimeChanged)
+
+        // the editor is retained by the view model across configuration changes
+        val editorData = viewModel.openEditor(editorBinding, editorView)
+        editorData.inputController?.listener = onEditorInput
         editorData.inputController?.setViewListener(editorView)
+        // send pointer events to the editor from a dedicated thread, in batches, independently of UI thread load
+        editorData.inputController?.setInputThreadEnabled(true)
+        editorData.inputController?.setSampleDecimator(sampleDecimator)
+        if (EnableClientMotionPrediction) {
+            editorData.inputController?.setMotionPredictor(PolynomialMotionPredictor())
+            editorData.inputController?.setPredictionStyle(Color.BLACK, ClientPredictionWidthMm)
+        }
+        inputController = editorData.inputController
         editorData.editor?.let { editor ->
-            viewModel.setEditor(editorData)
             setMargins(editor, R.dimen.editor_horizontal_margin, R.dimen.editor_vertical_margin)
             if (savedInstanceState == null) {
                 configureDefaultCaptureStrokePrediction(editorView?.context ?: this)
             }
-            smartGuideView?.setEditor(editor)
+            smartGuideView?.setEditor(editor, viewModel.jiixCache)
         }
         smartGuideView?.setMenuListener(onSmartGuideMenuAction)
         smartGuideView?.setTypeface(IInkApplication.DemoModule.defaultTypeface)
@@ -333,10 +385,36 @@ class MainActivity : AppCompatActivity() {
     }
 
     private fun configureDefaultCaptureStrokePrediction(context: Context) {
-        val durationMs = FrameTimeEstimator.getFrameTime(context)
-            .roundToInt()
-            .coerceAtLeast(DefaultMinimumPredictionDurationMs)
-        viewModel.changePredictionSettings(EnableCapturePredictionByDefault, durationMs)
+        val frameTimeMs = frameTimeTracker?.frameTime ?: FrameTimeEstimator.getFrameTime(context)
+        val durationMs = predictionDuration(frameTimeMs)
+        // the engine prediction is disabled when the client predicts
+        viewModel.changePredictionSettings(EnableCapturePredictionByDefault && !EnableClientMotionPrediction, durationMs)
+        if (EnableClientMotionPrediction) {
+            inputController?.setPredictionHorizon(durationMs.toLong())
+        }
+    }
+
+    private fun predictionDuration(frameTimeMs: Float): Int {
+        // the prediction hides the measured pen-to-pixel latency (input to displayed frame), at least a frame
+        val latencyMs = latencyTracker.sessionHistogram.getPercentile(50f).toFloat()
+        return maxOf(frameTimeMs, latencyMs).roundToInt()
+            .coerceIn(DefaultMinimumPredictionDurationMs, MaximumPredictionDurationMs)
+    }
+
+    // also called after each stroke, when the measured latency changes
+    private fun onFrameTimeChanged(frameTimeMs: Float) {
+        if (!isPredictionDurationAdaptive) return
+        if (EnableClientMotionPrediction) {
+            inputController?.setPredictionHorizon(predictionDuration(frameTimeMs).toLong())
+            return
+        }
+        val currentSettings = viewModel.predictionSettings
+        if (currentSettings.enabled) {
+            val durationMs = predictionDuration(frameTimeMs)
+            if (durationMs != currentSettings.durationMs) {
+                viewModel.changePredictionSettings(true, durationMs)
+            }
+        }
     }
 
     private fun showContextualActionDialog(actionState: ContextualActionState, selectedBlockId: String? = null) {
@@ -394,6 +472,7 @@ class MainActivity : AppCompatActivity() {
 
     override fun onStart() {
         super.onStart()
+        frameTimeTracker?.start()
 
         with(binding.editorToolbar) {
             switchActivePen.setOnCheckedChangeListener { _, isChecked ->
@@ -430,13 +509,37 @@ class MainActivity : AppCompatActivity() {
             BottomSheetBehavior.from(toolbarSettingsBottomSheet).removeBottomSheetCallback(onBottomSheetStateChanged)
             toolbarSettingsBottomSheet.setOnClickListener(null)
         }
+        frameTimeTracker?.stop()
         super.onStop()
     }
 
+    override fun dump(prefix: String, fd: FileDescriptor?, writer: PrintWriter, args: Array<out String>?) {
+        super.dump(prefix, fd, writer, args)
+        writer.println("${prefix}Pen-to-pixel latency:")
+        writer.println("$prefix  first stroke: ${firstStrokeLatency ?: "-"}")
+        writer.println("$prefix  last stroke: ${lastStrokeLatency ?: "-"}")
+        writer.println("$prefix  session: ${latencyTracker.sessionHistogram}")
+        val demoModule = IInkApplication.DemoModule
+        writer.println("${prefix}Recognition threads: ${demoModule.editor.recognitionThreadCount} (${demoModule.recognitionThreadPolicy})")
+        writer.println("${prefix}Part open: ${demoModule.editor.lastPartOpenTimings ?: "-"}")
+        writer.println("${prefix}Sample decimation: $sampleDecimator")
+        writer.println("${prefix}Capture warm-up: ${inputController?.captureWarmUpTimeMs ?: 0f} ms")
+        writer.println("${prefix}Display: ${frameTimeTracker ?: "-"}")
+        if (EnableClientMotionPrediction) {
+            writer.println("${prefix}Client prediction: ${inputController?.predictionMetrics ?: "-"}")
+        }
+    }
+
     override fun onDestroy() {
+        latencyTracker.setListener(null)
+        inputController = null
         smartGuideView?.setEditor(null)
         smartGuideView?.setMenuListener(null)
-        viewModel.setEditor(null)
+        if (isChangingConfigurations) {
+            viewModel.detachEditor()
+        } else {
+            viewModel.setEditor(null)
+        }
         super.onDestroy()
     }
 
@@ -631,6 +734,7 @@ class MainActivity : AppCompatActivity() {
     private fun showPredictionSettingsDialog() {
         val currentSettings = viewModel.predictionSettings
         launchPredictionDialog(currentSettings.enabled, currentSettings.durationMs) { enabled, durationMs ->
+            isPredictionDurationAdaptive = false
             viewModel.changePredictionSettings(enabled, durationMs)
         }
     }
@@ -8,7 +8,6 @@ import androidx.core.content.edit
 import com.myscript.iink.ContentPart
 import com.myscript.iink.Engine
 import com.myscript.iink.demo.domain.PartType
-import com.myscript.iink.demo.domain.getConfigurationProfile
 import com.myscript.iink.demo.domain.setConfigurationProfile
 import java.io.File
 import java.io.FileNotFoundException
@@ -129,21 +128,20 @@ class ContentRepository(
         return configurationProfiles
     }
 
-    override fun getConfiguration(contentPart: ContentPart): String? {
+    override fun getConfiguration(partType: String, configurationProfile: String?): String? {
         val assetManager = assetManager ?: return null
 
         val defaultFile = File(CONFIGURATION_PROFILE_DIRECTORY, DEFAULT_RAW_CONTENT_CONFIGURATION_FILE_NAME)
 
-        val configurationProfile = contentPart.getConfigurationProfile()
         val configurationFile = if (configurationProfile != null) {
-            val parent = File(CONFIGURATION_PROFILE_DIRECTORY, contentPart.type.toString())
+            val parent = File(CONFIGURATION_PROFILE_DIRECTORY, partType)
             val confFile = assetManager.list(parent.path)?.firstOrNull {
                 File(it).nameWithoutExtension == configurationProfile
             }
             if (confFile != null) {
                 File(parent, confFile)
             } else {
-                throw FileNotFoundException("Configuration profile '$configurationProfile' not found in assets for part type '${contentPart.type}'")
+                throw FileNotFoundException("Configuration profile '$configurationProfile' not found in assets for part type '$partType'")
             }
         } else {
             defaultFile
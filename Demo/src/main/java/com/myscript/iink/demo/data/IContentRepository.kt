@@ -4,6 +4,7 @@ package com.myscript.iink.demo.data
 
 import com.myscript.iink.ContentPart
 import com.myscript.iink.demo.domain.PartType
+import com.myscript.iink.demo.domain.getConfigurationProfile
 import java.io.File
 
 interface IContentRepository {
@@ -83,5 +84,15 @@ interface IContentRepository {
 
     fun requestPartTypes(): List<PartType>
 
-    fun getConfiguration(contentPart: ContentPart): String?
+    fun getConfiguration(contentPart: ContentPart): String? =
+        getConfiguration(contentPart.type, contentPart.getConfigurationProfile())
+
+    /**
+     * Reads the configuration of a part type, which does not require the part to be open.
+     *
+     * @param partType the iink part type.
+     * @param configurationProfile the configuration profile, `null` for the default configuration (shared by all part types).
+     * @return the configuration, `null` if none.
+     */
+    fun getConfiguration(partType: String, configurationProfile: String?): String?
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ import com.myscript.iink.demo.R
 import com.myscript.iink.demo.data.ContentRepository
 import com.myscript.iink.demo.data.ToolRepository
 import com.myscript.iink.demo.domain.PartEditor
+import com.myscript.iink.demo.domain.RecognitionThreadPolicy
 import com.myscript.iink.demo.domain.ToolType
 import com.myscript.iink.demo.domain.storageKey
 import com.myscript.iink.demo.ui.ColorPalette
@@ -38,6 +39,7 @@ class DemoModule(application: Application) {
     val colorPalette: ColorPalette
     val defaultTypeface: Typeface
     val extraBrushes: List<Canvas.ExtraBrushConfig>
+    val recognitionThreadPolicy: RecognitionThreadPolicy
     val editor: PartEditor
     val editorBinding: EditorBinding
 
@@ -54,12 +56,14 @@ class DemoModule(application: Application) {
         extraBrushes = provideExtraBrushConfigurations(application, engine)
         val preferences = providePreferences(application)
         val editorTheme = provideEditorTheme(application)
+        recognitionThreadPolicy = RecognitionThreadPolicy(application).apply { start() }
         editor = PartEditor(
             typefaces,
             editorTheme,
             providePartRepository(application, engine, preferences),
             provideToolRepository(preferences, colorPalette),
-            extraBrushes
+            extraBrushes,
+            recognitionThreadPolicy
         )
         editorBinding = EditorBinding(engine, typefaces)
     }
@@ -213,6 +217,7 @@ class DemoModule(application: Application) {
     }
 
     fun close() {
+        recognitionThreadPolicy.stop()
         engine?.close()
     }
 
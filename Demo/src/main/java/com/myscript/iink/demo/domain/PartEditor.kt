@@ -3,6 +3,8 @@
 package com.myscript.iink.demo.domain
 
 import android.graphics.Typeface
+import android.util.Log
+import android.view.Choreographer
 import androidx.annotation.VisibleForTesting
 import com.myscript.iink.ContentBlock
 import com.myscript.iink.ContentPart
@@ -14,6 +16,7 @@ import com.myscript.iink.EditorError
 import com.myscript.iink.IEditorListener
 import com.myscript.iink.MathDiagnostic
 import com.myscript.iink.MimeType
+import com.myscript.iink.ParameterSet
 import com.myscript.iink.PointerTool
 import com.myscript.iink.PointerType
 import com.myscript.iink.TextFormat
@@ -29,14 +32,26 @@ import com.myscript.iink.uireferenceimplementation.ContextualActionsHelper
 import com.myscript.iink.uireferenceimplementation.ImageLoader
 import com.myscript.iink.uireferenceimplementation.ImagePainter
 import com.myscript.iink.uireferenceimplementation.InputController
+import com.myscript.iink.uireferenceimplementation.JiixCache
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import java.io.File
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.coroutines.resume
 import com.myscript.iink.graphics.Color as IInkColor
 
 enum class ToolType {
@@ -123,12 +138,34 @@ enum class MenuAction {
 
 data class PredictionSettings(val enabled: Boolean = false, val durationMs: Int = 0)
 
+/**
+ * Durations of the stages of a part opening, in ms. The previous part is detached while the package opens.
+ */
+class PartOpenTimings {
+    var packageOpenMs: Float = 0f
+    var configurationResolveMs: Float = 0f
+    var configurationInjectMs: Float = 0f
+    var partAttachMs: Float = 0f
+    // until the first frame with the part is drawn
+    var firstFrameMs: Float = 0f
+    var totalMs: Float = 0f
+
+    override fun toString(): String {
+        return String.format(
+            Locale.US,
+            "total: %.1f ms (package open: %.1f, configuration resolve: %.1f, configuration inject: %.1f, part attach: %.1f, first frame: %.1f)",
+            totalMs, packageOpenMs, configurationResolveMs, configurationInjectMs, partAttachMs, firstFrameMs
+        )
+    }
+}
+
 class PartEditor(
     private val typefaces: Map<String, Typeface>,
     private val theme: String,
     private val contentRepository: IContentRepository,
     private val toolRepository: ToolRepository,
     private var extraBrushConfigs: List<Canvas.ExtraBrushConfig> = emptyList(),
+    private val recognitionThreadPolicy: RecognitionThreadPolicy? = null,
     private val mainDispatcher: CoroutineDispatcher = Dispatchers.Main,
     private val workDispatcher: CoroutineDispatcher = Dispatchers.Default,
     private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO
@@ -139,6 +176,7 @@ class PartEditor(
         fun partLoaded(partId: String, partType: PartType)
         fun partLoading(partId: String)
         fun partLoadingError(partId: String, exception: Exception)
+        fun partOpened(partId: String, timings: PartOpenTimings) = Unit
         fun editorError(blockId: String, error: EditorError, message: String)
         fun toolChanged(toolType: ToolType?, iinkColor: IInkColor, thickness: Float, penBrush: PenBrush?)
         fun colorChanged(toolType: ToolType, iinkColor: IInkColor?)
@@ -158,6 +196,12 @@ class PartEditor(
     var editor by autoCloseable<Editor>(null) { oldEditor ->
         if (oldEditor != null) {
             oldEditor.removeListener(editorListener)
+            jiixCache?.close()
+            jiixCache = null
+            mathStrokesConfig?.close()
+            mathStrokesConfig = null
+            mathGlyphsConfig?.close()
+            mathGlyphsConfig = null
             oldEditor.part = null
             oldEditor.renderer.close()
         }
@@ -171,46 +215,74 @@ class PartEditor(
             }
         }
     private var currentIndex: Int = -1
+    // latest part open, superseded ones are cancelled
+    private var openPartJob: Job? = null
+    private var requestedIndex: Int = -1
+    // serializes the editor part and configuration changes of concurrent part opens
+    private val editorMutex = Mutex()
     private var listener: Listener? = null
     private var allParts: List<String> = emptyList()
+    // JIIX exports of unchanged blocks, shared by the consumers of the editor (e.g. the smart guide)
+    var jiixCache: JiixCache? = null
+        private set
+    // math solver configurations, created once per editor (solves are serialized by the editor mutex)
+    @Volatile
+    private var mathStrokesConfig: ParameterSet? = null
+    @Volatile
+    private var mathGlyphsConfig: ParameterSet? = null
     var isActivePenEnabled: Boolean = true
+    // as configured for the current part
+    @Volatile
+    var recognitionThreadCount: Int = 1
+        private set
+    var lastPartOpenTimings: PartOpenTimings? = null
+        private set
+    // configurations read from assets, by part type and configuration profile, accessed from the main thread
+    private val configurations = mutableMapOf<String, String>()
+    // types of the parts created or opened so far, to resolve their configuration while their package opens
+    private val knownPartTypes = mutableMapOf<String, PartType>()
+    // last configuration injected in the editor, re-injecting the same one is skipped
+    @Volatile
+    private var injectedConfiguration: String? = null
     var inputController: InputController? = null
 
+    // pending auto-solve per Math block, accessed from the main thread
+    private val mathSolveJobs = mutableMapOf<String, Job>()
+    // types of the blocks seen in contentChanged, from the editor listener thread
+    private val blockTypes = ConcurrentHashMap<String, String>()
+
     companion object {
         const val NUMERICAL_COMPUTATION = "numerical-computation"
+        // auto-solve waits for writing to pause on a block
+        private const val MATH_AUTO_SOLVE_DELAY_MS = 500L
+        private const val NS_IN_A_MS = 1_000_000f
+        private const val TAG = "PartEditor"
+    }
+
+    init {
+        recognitionThreadPolicy?.setListener(::updateRecognitionThreadCount)
     }
 
     private val editorListener: IEditorListener = object : IEditorListener {
         override fun partChanging(editor: Editor, oldPart: ContentPart?, newPart: ContentPart?) = Unit
 
         override fun partChanged(editor: Editor) {
+            blockTypes.clear()
+            scope.launch(mainDispatcher) {
+                cancelMathSolves()
+            }
             notifyState()
         }
 
         override fun contentChanged(editor: Editor, blockIds: Array<out String>) {
             notifyUndoRedoState()
 
-            // Auto-solve isolated Math blocks
-            for (blockId in blockIds) {
-                val block = editor.getBlockById(blockId)
-                if (block?.type == "Math" && editor.part?.type == "Raw Content") {
-                    try {
-                        val configStrokes = editor.engine.createParameterSet()
-                        configStrokes.setString("math.solver.rendered-ink-type", "strokes")
-                        val configGlyphs = editor.engine.createParameterSet()
-                        configGlyphs.setString("math.solver.rendered-ink-type", "glyphs")
-
-                        val solveAsStrokes = editor.mathSolverController.getDiagnostic(blockId, "numerical-computation", configStrokes)
-                        val solveAsGlyphs  = editor.mathSolverController.getDiagnostic(blockId, "numerical-computation", configGlyphs)
-
-                        if (solveAsStrokes == MathDiagnostic.ALLOWED && solveAsGlyphs == MathDiagnostic.ALLOWED) { // not already solved as strokes or glyphs
-                            val config = if (editor.getConversionState(block).contains(ConversionState.HANDWRITING)) configStrokes else configGlyphs
-                            editor.mathSolverController.applyAction(blockId, NUMERICAL_COMPUTATION, config)
-                        }
-                    } catch (e: Exception)
-                    {
-                        notifyError(blockId, EditorError.GENERIC, e.toString())
-                    }
+            // Auto-solve isolated Math blocks, once writing pauses
+            if (editor.part?.type != "Raw Content") return
+            val mathBlockIds = blockIds.filter { blockId -> getBlockType(editor, blockId) == "Math" }
+            if (mathBlockIds.isNotEmpty()) {
+                scope.launch(mainDispatcher) {
+                    mathBlockIds.forEach { blockId -> scheduleMathSolve(editor, blockId) }
                 }
             }
         }
@@ -228,6 +300,63 @@ class PartEditor(
         }
     }
 
+    // a block keeps its type: only blocks never seen before are looked up
+    private fun getBlockType(editor: Editor, blockId: String): String? {
+        blockTypes[blockId]?.let { return it }
+        val type = editor.getBlockById(blockId)?.use { block -> block.type } ?: return null
+        blockTypes[blockId] = type
+        return type
+    }
+
+    private fun scheduleMathSolve(editor: Editor, blockId: String) {
+        val part = currentPart ?: return
+        mathSolveJobs.remove(blockId)?.cancel()
+        mathSolveJobs[blockId] = scope.launch(mainDispatcher) {
+            delay(MATH_AUTO_SOLVE_DELAY_MS)
+            mathSolveJobs.remove(blockId)
+            // a part open must not change the editor part while solving
+            editorMutex.withLock {
+                if (this@PartEditor.editor !== editor || currentPart !== part || editor.part !== part) return@withLock
+                withContext(workDispatcher) {
+                    solveMath(editor, blockId)
+                }
+            }
+        }
+    }
+
+    private fun solveMath(editor: Editor, blockId: String) {
+        if (editor.isClosed) return
+        val block = editor.getBlockById(blockId) ?: return
+        block.use {
+            if (!block.isValid || block.type != "Math") return
+            try {
+                val configStrokes = mathStrokesConfig ?: editor.engine.createParameterSet().also { config ->
+                    config.setString("math.solver.rendered-ink-type", "strokes")
+                    mathStrokesConfig = config
+                }
+                val configGlyphs = mathGlyphsConfig ?: editor.engine.createParameterSet().also { config ->
+                    config.setString("math.solver.rendered-ink-type", "glyphs")
+                    mathGlyphsConfig = config
+                }
+
+                val solveAsStrokes = editor.mathSolverController.getDiagnostic(blockId, NUMERICAL_COMPUTATION, configStrokes)
+                val solveAsGlyphs = editor.mathSolverController.getDiagnostic(blockId, NUMERICAL_COMPUTATION, configGlyphs)
+
+                if (solveAsStrokes == MathDiagnostic.ALLOWED && solveAsGlyphs == MathDiagnostic.ALLOWED) { // not already solved as strokes or glyphs
+                    val config = if (editor.getConversionState(block).contains(ConversionState.HANDWRITING)) configStrokes else configGlyphs
+                    editor.mathSolverController.applyAction(blockId, NUMERICAL_COMPUTATION, config)
+                }
+            } catch (e: Exception) {
+                notifyError(blockId, EditorError.GENERIC, e.toString())
+            }
+        }
+    }
+
+    private fun cancelMathSolves() {
+        mathSolveJobs.values.forEach(Job::cancel)
+        mathSolveJobs.clear()
+    }
+
     private fun notifyUndoRedoState() {
         val canUndo = editor?.canUndo() ?: false
         val canRedo = editor?.canRedo() ?: false
@@ -270,18 +399,28 @@ class PartEditor(
 
     fun setEditor(editor: Editor?, inputController: InputController?) {
         if (editor != null) {
-
-            editor.addListener(editorListener)
-            editor.theme = theme
             this.inputController = inputController
 
-            currentPart?.let { part ->
-                loadConfiguration(editor, part)
-            }
+            // a retained editor attached to a new view already has its listener, theme and part
+            if (editor !== this.editor) {
+                injectedConfiguration = null
+                editor.addListener(editorListener)
+                editor.theme = theme
+
+                currentPart?.let { part ->
+                    loadConfiguration(editor, part)
+                }
 
-            editor.part = currentPart
+                editor.part = currentPart
+            }
+        } else {
+            // the input thread must not use the editor once closed
+            this.inputController?.setInputThreadEnabled(false)
         }
         this.editor = editor
+        if (editor != null && jiixCache == null) {
+            jiixCache = JiixCache(editor)
+        }
         val penBrush = getPenBrush(ToolType.PEN)
         setToolStyle(ToolType.PEN, getToolColor(ToolType.PEN), getToolThickness(ToolType.PEN), penBrush, getToolStyling(ToolType.PEN, penBrush))
         setToolStyle(ToolType.HIGHLIGHTER, getToolColor(ToolType.HIGHLIGHTER), getToolThickness(ToolType.HIGHLIGHTER), null, getToolStyling(ToolType.HIGHLIGHTER, null))
@@ -289,6 +428,8 @@ class PartEditor(
     }
 
     fun closeEditor() {
+        cancelMathSolves()
+        inputController?.setInputThreadEnabled(false)
         inputController = null
         editor = null
     }
@@ -322,11 +463,21 @@ class PartEditor(
                 x != null && y != null -> editor.hitBlock(x, y)
                 else -> null
             }
+            val jiixCache = jiixCache
+            if (mimeType == MimeType.JIIX && content is ContentBlock && jiixCache != null) {
+                waitForRecognition(editor)
+                val jiix = jiixCache.getJiix(content.id)
+                if (jiix != null) {
+                    outputFile.parentFile?.mkdirs()
+                    outputFile.writeText(jiix)
+                    return
+                }
+            }
             val imagePainter = ImagePainter(extraBrushConfigs).apply {
                 setImageLoader(ImageLoader(editor))
                 setTypefaceMap(typefaces)
             }
-            editor.waitForIdle()
+            waitForRecognition(editor)
             outputFile.parentFile?.mkdirs()
             editor.export_(content, outputFile.absolutePath, mimeType, imagePainter)
         }
@@ -356,68 +507,223 @@ class PartEditor(
 
     fun createPart(partType: PartType): String {
         val partId = contentRepository.createPart(partType)
+        knownPartTypes[partId] = partType
         allParts = contentRepository.allParts
         return partId
     }
 
+    /**
+     * Opens a part, cancelling the opening of the part previously requested if still ongoing: only the latest
+     * requested part is attached to the editor.
+     */
     fun openPart(partId: String) {
         val index = allParts.indexOf(partId)
         if (index == -1) return
-        scope.launch(mainDispatcher) {
+        openPartJob?.cancel()
+        requestedIndex = index
+        openPartJob = scope.launch(mainDispatcher) {
             listener?.partLoading(partId)
+            val timings = PartOpenTimings()
+            val start = System.nanoTime()
+            // owned by whoever takes it: this open once the package is open, or the package open when superseded
+            val openedPart = AtomicReference<ContentPart?>()
+            // resolves the configuration of the part type if known, or reads the default one, while the package opens
+            val expectedType = knownPartTypes[partId]
+            val expectedConfigurationKey = configurationKey(expectedType?.iinkPartType.orEmpty(), expectedType?.configurationProfile)
+            val expectedConfiguration = async {
+                // not awaited when the part type differs, its failure must not cancel the open
+                runCatching { resolveConfiguration(expectedType?.iinkPartType.orEmpty(), expectedType?.configurationProfile) }
+            }
             try {
-                val contentPart = withContext(workDispatcher) {
-                    contentRepository.getPart(partId)
+                // the previous part stays displayed while the package opens and the configuration is resolved
+                withContext(workDispatcher) {
+                    measure({ timings.packageOpenMs = it }) {
+                        val part = contentRepository.getPart(partId)
+                        openedPart.set(part)
+                        // a package open cannot be interrupted, close its part as soon as it is known abandoned
+                        if (!isActive && openedPart.compareAndSet(part, null)) {
+                            part.close()
+                        }
+                    }
                 }
+                val contentPart = openedPart.get() ?: throw CancellationException("Part open superseded")
+                val partType = contentPart.type
+                val configurationProfile = contentPart.getConfigurationProfile()
+                knownPartTypes[partId] = PartType(partType, configurationProfile)
+
+                // only waits for the remaining part of the resolve, if any
+                val configuration = measure({ timings.configurationResolveMs = it }) {
+                    if (configurationKey(partType, configurationProfile) == expectedConfigurationKey) {
+                        expectedConfiguration.await().getOrThrow()
+                    } else {
+                        expectedConfiguration.cancel()
+                        resolveConfiguration(partType, configurationProfile)
+                    }
+                }
+                // a superseded open may still be injecting its configuration on the IO dispatcher
+                editorMutex.withLock {
+                    val previousConfiguration = injectedConfiguration
+                    var isPreviousPartDetached = false
+                    try {
+                        // the new part is ready: swap parts, the configuration applies to the new one only
+                        editor?.part = null
+                        isPreviousPartDetached = true
+                        measure({ timings.configurationInjectMs = it }) {
+                            withContext(ioDispatcher) {
+                                val editor = editor ?: return@withContext
+                                loadConfiguration(editor, contentPart, configuration)
+                            }
+                        }
 
-                editor?.part = null
+                        measure({ timings.partAttachMs = it }) {
+                            editor?.part = contentPart
+                            editor?.renderer?.setViewOffset(0f, 0f)
+                            editor?.renderer?.viewScale = 1f
+                        }
 
-                currentPart = contentPart
+                        // closes the previous part, now detached
+                        currentPart = checkNotNull(openedPart.getAndSet(null))
+                    } catch (e: Throwable) {
+                        // never leave the editor blank: the previous part is kept, with its configuration
+                        if (isPreviousPartDetached) {
+                            withContext(NonCancellable) {
+                                reattachCurrentPart(previousConfiguration)
+                            }
+                        }
+                        throw e
+                    }
+                }
                 currentIndex = index
                 contentRepository.lastOpenedPartId = partId
 
-                withContext(ioDispatcher) {
-                    val editor = editor ?: return@withContext
-                    loadConfiguration(editor, contentPart)
-                }
-
-                editor?.part = contentPart
-                editor?.renderer?.setViewOffset(0f, 0f)
-                editor?.renderer?.viewScale = 1f
-
                 changeTool(ToolType.PEN)
 
                 notifyState()
-                val partType = checkNotNull(currentPartType)
-                listener?.partLoaded(partId, partType)
+                listener?.partLoaded(partId, checkNotNull(currentPartType))
+
+                measure({ timings.firstFrameMs = it }) {
+                    awaitFrameDrawn()
+                }
+                timings.totalMs = (System.nanoTime() - start) / NS_IN_A_MS
+                lastPartOpenTimings = timings
+                listener?.partOpened(partId, timings)
+            } catch (e: CancellationException) {
+                // the superseding open swaps parts in turn
+                openedPart.getAndSet(null)?.close()
+                throw e
             } catch (e: Exception) {
+                // the previous part, if any, is kept when the new one cannot be opened
+                openedPart.getAndSet(null)?.close()
                 listener?.partLoadingError(partId, e)
             }
         }
     }
 
+    private inline fun <T> measure(setDurationMs: (Float) -> Unit, block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            setDurationMs((System.nanoTime() - start) / NS_IN_A_MS)
+        }
+    }
+
+    // parts without configuration profile share the default configuration, whatever their type
+    private fun configurationKey(partType: String, configurationProfile: String?): String {
+        return if (configurationProfile != null) "$partType/$configurationProfile" else ""
+    }
+
+    private suspend fun resolveConfiguration(partType: String, configurationProfile: String?): String? {
+        val key = configurationKey(partType, configurationProfile)
+        configurations[key]?.let { return it }
+        val configuration = withContext(ioDispatcher) {
+            contentRepository.getConfiguration(partType, configurationProfile)
+        }
+        if (configuration != null) {
+            configurations[key] = configuration
+        }
+        return configuration
+    }
+
+    // must hold the editor mutex
+    private suspend fun reattachCurrentPart(configuration: String?) {
+        val editor = editor ?: return
+        val part = currentPart
+        if (configuration == null) {
+            // the previous part had no configuration, drop what the new one may have left
+            withContext(ioDispatcher) {
+                editor.configuration.reset()
+            }
+            injectedConfiguration = null
+        } else if (part != null && configuration !== injectedConfiguration) {
+            withContext(ioDispatcher) {
+                loadConfiguration(editor, part, configuration)
+            }
+        }
+        editor.part = part
+    }
+
+    // frame callbacks run before the frame is drawn: the frame following the part attach is drawn once the next one starts
+    private suspend fun awaitFrameDrawn() {
+        repeat(2) {
+            suspendCancellableCoroutine<Unit> { continuation ->
+                Choreographer.getInstance().postFrameCallback { continuation.resume(Unit) }
+            }
+        }
+    }
+
     private fun loadConfiguration(editor: Editor, contentPart: ContentPart) {
-        val configuration = contentRepository.getConfiguration(contentPart)
+        loadConfiguration(editor, contentPart, contentRepository.getConfiguration(contentPart))
+    }
+
+    private fun loadConfiguration(editor: Editor, contentPart: ContentPart, configuration: String?) {
         if (configuration != null) {
-            editor.configuration.reset()
-            editor.configuration.inject(configuration)
+            // resolved configurations are cached, an identical instance is already in the editor
+            if (configuration !== injectedConfiguration) {
+                // unknown until injected, should the injection fail
+                injectedConfiguration = null
+                editor.configuration.reset()
+                editor.configuration.inject(configuration)
+                injectedConfiguration = configuration
+            }
 
             // configure multithreading for text recognition
-            editor.configuration.setNumber("max-recognition-thread-count", 1)
+            val threadCount = recognitionThreadPolicy?.getThreadCount(contentPart.type) ?: 1
+            editor.configuration.setNumber("max-recognition-thread-count", threadCount)
+            recognitionThreadCount = threadCount
+            Log.i(TAG, "Recognition threads: $threadCount for ${contentPart.type} ($recognitionThreadPolicy)")
             // also allow shape rotation in diagram parts
             editor.configuration.setStringArray("diagram.rotation", arrayOf("shape"))
         }
     }
 
+    private fun updateRecognitionThreadCount() {
+        val policy = recognitionThreadPolicy ?: return
+        val editor = editor ?: return
+        val part = currentPart ?: return
+        val threadCount = policy.getThreadCount(part.type)
+        if (threadCount != recognitionThreadCount) {
+            editor.configuration.setNumber("max-recognition-thread-count", threadCount)
+            recognitionThreadCount = threadCount
+            Log.i(TAG, "Recognition threads: $threadCount for ${part.type} ($policy)")
+        }
+    }
+
+    // navigation continues from the part being opened, if any
+    private val navigationIndex: Int
+        get() = if (openPartJob?.isActive == true) requestedIndex else currentIndex
+
     fun previousPart() {
-        if (currentIndex <= 0) return
-        val partId = allParts[currentIndex - 1]
+        val index = navigationIndex
+        if (index <= 0) return
+        val partId = allParts[index - 1]
         openPart(partId)
     }
 
     fun nextPart() {
-        if (currentIndex >= allParts.lastIndex) return
-        val partId = allParts[currentIndex + 1]
+        val index = navigationIndex
+        if (index >= allParts.lastIndex) return
+        val partId = allParts[index + 1]
         openPart(partId)
     }
 
@@ -493,6 +799,10 @@ class PartEditor(
         val penBrush = getPenBrush(tool)
         if (setToolStyle(tool, iinkColor, thickness, penBrush, getToolStyling(tool, penBrush))) {
             selectedTool = tool
+            if (tool == ToolType.PEN) {
+                // prepare the pen rendering before the first stroke
+                inputController?.warmUpCapture()
+            }
             scope.launch(mainDispatcher) {
                 listener?.toolChanged(tool, iinkColor, thickness, penBrush)
             }
@@ -531,6 +841,10 @@ class PartEditor(
         return try {
             editor.toolController.setToolStyle(pointerTool, style)
             editor.toolController.setToolForType(pointerType, pointerTool)
+            inputController?.setCaptureStrokeWidth(thickness)
+            if (pointerTool == PointerTool.PEN) {
+                inputController?.setPredictionStyle(iinkColor.androidColor, thickness)
+            }
             true
         } catch (e: IllegalStateException) {
             // a pointer event sequence is in progress, not allowed to re-configure or change tool
@@ -716,12 +1030,31 @@ class PartEditor(
     fun convertContent(content: ContentSelection? = null) {
         val conversionState = editor?.getSupportedTargetConversionStates(content)
         if (!conversionState.isNullOrEmpty()) {
-            editor?.convert(content, conversionState.first())
+            // conversion waits for the recognition of the pending strokes
+            logRecognitionDuration("convert") {
+                editor?.convert(content, conversionState.first())
+            }
         }
     }
 
     fun waitForIdle() {
-        editor?.waitForIdle()
+        val editor = editor ?: return
+        waitForRecognition(editor)
+    }
+
+    private fun waitForRecognition(editor: Editor) {
+        logRecognitionDuration("wait for idle") {
+            editor.waitForIdle()
+        }
+    }
+
+    // recognition durations are logged with the thread count they ran with, to tune the thread policy
+    private inline fun logRecognitionDuration(operation: String, block: () -> Unit) {
+        val threadCount = recognitionThreadCount
+        val start = System.nanoTime()
+        block()
+        val durationMs = (System.nanoTime() - start) / NS_IN_A_MS
+        Log.d(TAG, String.format(Locale.US, "%s: %.1f ms with %d recognition threads", operation, durationMs, threadCount))
     }
 
     fun closePart() {
@@ -0,0 +1,185 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.demo.domain
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.Build
+import android.os.PowerManager
+import androidx.annotation.RequiresApi
+import androidx.core.content.ContextCompat
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * Chooses the `max-recognition-thread-count` of the engine from the device state.
+ *
+ * Recognition runs on the performance cores (all but the lowest frequency cluster on big.LITTLE devices), one
+ * core being left to input and rendering. The count is reduced when the device heats up and falls to a single
+ * thread in battery saver. Text recognition benefits most from several threads, so other part types are capped
+ * lower. The listener is notified on the main thread when thermal status or battery saver change, and once the
+ * performance cores are known: cpufreq files are read on the IO dispatcher when started.
+ */
+class RecognitionThreadPolicy(
+    context: Context,
+    mainDispatcher: CoroutineDispatcher = Dispatchers.Main,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+
+    fun interface Listener {
+        fun onRecognitionThreadPolicyChanged()
+    }
+
+    private val context = context.applicationContext
+    private val powerManager = context.getSystemService(Context.POWER_SERVICE) as PowerManager
+    private val coreCount = Runtime.getRuntime().availableProcessors()
+    private val scope = CoroutineScope(SupervisorJob() + mainDispatcher)
+    // all cores until the cpufreq files are read
+    @Volatile
+    private var performanceCoreCount = coreCount
+    private var performanceCoreJob: Job? = null
+
+    @Volatile
+    private var thermalStatus = THERMAL_STATUS_NONE
+    @Volatile
+    private var isPowerSaveMode = false
+    private var listener: Listener? = null
+    private var isStarted = false
+
+    private val powerSaveModeReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            isPowerSaveMode = powerManager.isPowerSaveMode
+            listener?.onRecognitionThreadPolicyChanged()
+        }
+    }
+
+    private val thermalStatusListener: Any? = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+        PowerManager.OnThermalStatusChangedListener { status ->
+            thermalStatus = status
+            listener?.onRecognitionThreadPolicyChanged()
+        }
+    } else {
+        null
+    }
+
+    init {
+        isPowerSaveMode = powerManager.isPowerSaveMode
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalStatus = powerManager.currentThermalStatus
+        }
+    }
+
+    fun setListener(listener: Listener?) {
+        this.listener = listener
+    }
+
+    /**
+     * Starts monitoring the device state, from the main thread.
+     */
+    fun start() {
+        if (isStarted) return
+        isStarted = true
+        ContextCompat.registerReceiver(context, powerSaveModeReceiver, IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED)
+        isPowerSaveMode = powerManager.isPowerSaveMode
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            addThermalStatusListener()
+        }
+        if (performanceCoreJob == null) {
+            performanceCoreJob = scope.launch {
+                val count = withContext(ioDispatcher) { countPerformanceCores(coreCount) }
+                if (count != performanceCoreCount) {
+                    performanceCoreCount = count
+                    listener?.onRecognitionThreadPolicyChanged()
+                }
+            }
+        }
+    }
+
+    fun stop() {
+        if (!isStarted) return
+        isStarted = false
+        context.unregisterReceiver(powerSaveModeReceiver)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            removeThermalStatusListener()
+        }
+        // an interrupted read is done again on next start
+        performanceCoreJob?.let { job ->
+            if (job.isActive) {
+                job.cancel()
+                performanceCoreJob = null
+            }
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private fun addThermalStatusListener() {
+        thermalStatus = powerManager.currentThermalStatus
+        powerManager.addThermalStatusListener(thermalStatusListener as PowerManager.OnThermalStatusChangedListener)
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private fun removeThermalStatusListener() {
+        powerManager.removeThermalStatusListener(thermalStatusListener as PowerManager.OnThermalStatusChangedListener)
+    }
+
+    /**
+     * @param partType the iink part type (`ContentPart.type`).
+     * @return the recognition thread count to configure for this part type in the current device state.
+     */
+    fun getThreadCount(partType: String?): Int {
+        if (isPowerSaveMode) return 1
+        var count = if (coreCount > 2) minOf(performanceCoreCount, coreCount - 1) else 1
+        when {
+            thermalStatus >= THERMAL_STATUS_SEVERE -> count = 1
+            thermalStatus >= THERMAL_STATUS_MODERATE -> count /= 2
+        }
+        return count.coerceIn(1, maxThreadCount(partType))
+    }
+
+    private fun maxThreadCount(partType: String?): Int {
+        return when (partType) {
+            PartType.TextDocument.iinkPartType, PartType.Text.iinkPartType, PartType.RawContent.iinkPartType -> MAX_TEXT_THREAD_COUNT
+            else -> MAX_OTHER_THREAD_COUNT
+        }
+    }
+
+    override fun toString(): String {
+        val powerSave = if (isPowerSaveMode) "on" else "off"
+        return "cores: $coreCount, performance cores: $performanceCoreCount, thermal status: $thermalStatus, battery saver: $powerSave"
+    }
+
+    companion object {
+        // PowerManager.THERMAL_STATUS_* values, available from API 29
+        private const val THERMAL_STATUS_NONE = 0
+        private const val THERMAL_STATUS_MODERATE = 2
+        private const val THERMAL_STATUS_SEVERE = 3
+
+        private const val MAX_TEXT_THREAD_COUNT = 4
+        private const val MAX_OTHER_THREAD_COUNT = 2
+
+        /**
+         * Counts the cores faster than the efficiency cluster from the cpufreq max frequencies, all cores on
+         * homogeneous devices or when unknown.
+         */
+        private fun countPerformanceCores(coreCount: Int): Int {
+            val maxFrequencies = (0 until coreCount).map { cpu ->
+                try {
+                    File("/sys/devices/system/cpu/cpu$cpu/cpufreq/cpuinfo_max_freq").readText().trim().toLong()
+                } catch (e: Exception) {
+                    0L
+                }
+            }
+            val lowest = maxFrequencies.minOrNull() ?: 0L
+            if (lowest <= 0L || maxFrequencies.all { it == lowest }) return coreCount
+            return maxFrequencies.count { it > lowest }
+        }
+    }
+}
@@ -17,7 +17,12 @@ import com.myscript.iink.demo.domain.PartType
 import com.myscript.iink.demo.domain.PenBrush
 import com.myscript.iink.demo.domain.PredictionSettings
 import com.myscript.iink.demo.domain.ToolType
+import com.myscript.iink.demo.util.autoCloseable
+import com.myscript.iink.uireferenceimplementation.EditorBinding
 import com.myscript.iink.uireferenceimplementation.EditorData
+import com.myscript.iink.uireferenceimplementation.EditorSession
+import com.myscript.iink.uireferenceimplementation.EditorView
+import com.myscript.iink.uireferenceimplementation.JiixCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -140,6 +145,11 @@ class EditorViewModel(
     val predictionSettings: PredictionSettings
         get() = partEditor.getPredictionSettings()
 
+    val jiixCache: JiixCache?
+        get() = partEditor.jiixCache
+
+    private var editorSession by autoCloseable<EditorSession>(null)
+
     private val partEditorListener: PartEditor.Listener =
         object : PartEditor.Listener {
             override fun updateUndoRedoState(canUndo: Boolean, canRedo: Boolean) {
@@ -253,6 +263,7 @@ class EditorViewModel(
         super.onCleared()
         partEditor.saveCurrentPart()
         partEditor.closeEditor()
+        editorSession = null
         partEditor.closePart()
         partEditor.setListener(null)
     }
@@ -274,6 +285,34 @@ class EditorViewModel(
 
     fun setEditor(editorData: EditorData?) {
         partEditor.setEditor(editorData?.editor, editorData?.inputController)
+        if (editorData == null) {
+            editorSession = null
+        }
+    }
+
+    /**
+     * Binds the editor to the given view, reusing the editor (with its renderer and caches) retained
+     * from a previous view if any, as this view model outlives configuration changes.
+     */
+    fun openEditor(editorBinding: EditorBinding, editorView: EditorView?): EditorData {
+        val session = editorSession ?: editorView?.let(editorBinding::createSession)
+        editorSession = session
+        val editorData = if (session != null) {
+            editorBinding.openEditor(editorView, session)
+        } else {
+            editorBinding.openEditor(editorView)
+        }
+        if (editorData.editor != null) {
+            setEditor(editorData)
+        }
+        return editorData
+    }
+
+    /**
+     * Detaches the retained editor from its view, to be re-attached with [openEditor].
+     */
+    fun detachEditor() {
+        editorSession?.detach()
     }
 
     fun requestNewPart() {
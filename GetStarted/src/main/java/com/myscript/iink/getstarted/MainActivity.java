@@ -220,6 +220,7 @@ protected void onDestroy()
       editor.close();
     }
     editorView.setOnTouchListener(null);
+    editorView.setOnHoverListener(null);
     editorView.setEditor(null);
 
     if (contentPart != null)
@@ -83,12 +83,20 @@ public class Canvas implements ICanvas
   @Nullable
   private final ImageLoader imageLoader;
   private final OfflineSurfaceManager offlineSurfaceManager;
+  @NonNull
+  private final List<ExtraBrushConfig> extraBrushConfigs;
   @Nullable
   private GLRenderer glRenderer;
   private boolean keepGLRenderer = false;
+  private int glRendererWidth = 0;
+  private int glRendererHeight = 0;
 
   private boolean clearOnStartDraw = true;
 
+  // top-left corner of the target canvas, in view coordinates (non-zero when rendering around the viewport)
+  private float originX = 0;
+  private float originY = 0;
+
   private final List<String> clips;
 
   private final Map<String, Typeface> typefaceMap;
@@ -142,13 +150,9 @@ public Canvas(@Nullable android.graphics.Canvas canvas, @NonNull List<ExtraBrush
     this.offlineSurfaceManager = offlineSurfaceManager;
     this.xdpi = xdpi;
     this.ydpi = ydpi;
+    this.extraBrushConfigs = extraBrushConfigs;
 
-    if (!extraBrushConfigs.isEmpty() && GLRenderer.isDeviceSupported())
-    {
-      glRenderer = new GLRenderer();
-      for (ExtraBrushConfig config : extraBrushConfigs)
-        glRenderer.configureBrush(config.baseName, config.stampBitmap, config.backgroundBitmap, config.config);
-    }
+    glRenderer = createGLRenderer(extraBrushConfigs);
 
     clips = new ArrayList<>();
 
@@ -184,6 +188,18 @@ public Canvas(@Nullable android.graphics.Canvas canvas, @NonNull List<ExtraBrush
     applyStyle(DEFAULT_SVG_STYLE);
   }
 
+  @Nullable
+  private static GLRenderer createGLRenderer(@NonNull List<ExtraBrushConfig> extraBrushConfigs)
+  {
+    if (extraBrushConfigs.isEmpty() || !GLRenderer.isDeviceSupported())
+      return null;
+
+    GLRenderer glRenderer = new GLRenderer();
+    for (ExtraBrushConfig config : extraBrushConfigs)
+      glRenderer.configureBrush(config.baseName, config.stampBitmap, config.backgroundBitmap, config.config);
+    return glRenderer;
+  }
+
   public void destroy()
   {
     if (glRenderer != null)
@@ -208,6 +224,19 @@ public void setKeepGLRenderer(boolean keepGLRenderer)
     this.keepGLRenderer = keepGLRenderer;
   }
 
+  /**
+   * Sets the view coordinates mapped to the top-left corner of the target canvas.
+   * This allows rendering areas lying outside of the view (e.g. to prefetch content around the viewport).
+   *
+   * @param originX the horizontal view coordinate of the target canvas origin, in pixels.
+   * @param originY the vertical view coordinate of the target canvas origin, in pixels.
+   */
+  public void setViewOrigin(float originX, float originY)
+  {
+    this.originX = originX;
+    this.originY = originY;
+  }
+
   private void applyStyle(@NonNull Style style)
   {
     setStrokeColor(style.getStrokeColor());
@@ -237,10 +266,10 @@ public void setTransform(@NonNull Transform transform)
   {
     transformValues[Matrix.MSCALE_X] = (float) transform.xx;
     transformValues[Matrix.MSKEW_X] = (float) transform.yx;
-    transformValues[Matrix.MTRANS_X] = (float) transform.tx;
+    transformValues[Matrix.MTRANS_X] = (float) transform.tx - originX;
     transformValues[Matrix.MSKEW_Y] = (float) transform.xy;
     transformValues[Matrix.MSCALE_Y] = (float) transform.yy;
-    transformValues[Matrix.MTRANS_Y] = (float) transform.ty;
+    transformValues[Matrix.MTRANS_Y] = (float) transform.ty - originY;
 
     Objects.requireNonNull(canvas);
     transformMatrix.setValues(transformValues);
@@ -386,10 +415,10 @@ public void startDraw(int x, int y, int width, int height)
     Objects.requireNonNull(canvas);
     canvas.save();
 
-    pointsCache[0] = x;
-    pointsCache[1] = y;
-    pointsCache[2] = x + width;
-    pointsCache[3] = y + height;
+    pointsCache[0] = x - originX;
+    pointsCache[1] = y - originY;
+    pointsCache[2] = x - originX + width;
+    pointsCache[3] = y - originY + height;
 
     // When offscreen rendering is supported, clear the destination
     // Otherwise, do not clear the destination (e.g. when exporting image, we want a white background)
@@ -474,6 +503,36 @@ public void drawPath(@NonNull IPath ipath)
     }
   }
 
+  /**
+   * Initializes the extra brush renderer for targets up to the given size, so that the first stroke drawn with an
+   * extra brush does not pay for it. Must be called from the drawing thread.
+   *
+   * @return {@code true} if the renderer was initialized, {@code false} if it was already or if there are no extra brushes.
+   */
+  public boolean prepareExtraBrushes(int width, int height)
+  {
+    if (glRenderer == null || width <= 0 || height <= 0)
+      return false;
+    return initializeGLRenderer(width, height);
+  }
+
+  private boolean initializeGLRenderer(int width, int height)
+  {
+    if (glRenderer.isInitialized() && (width > glRendererWidth || height > glRendererHeight))
+    {
+      // the target grew since initialization (canvas reused across resizes), start over with a large enough renderer
+      glRenderer.destroy();
+      glRenderer = Objects.requireNonNull(createGLRenderer(extraBrushConfigs));
+    }
+    if (glRenderer.isInitialized())
+      return false;
+
+    glRendererWidth = width;
+    glRendererHeight = height;
+    glRenderer.initialize(keepGLRenderer, glRendererWidth, glRendererHeight, xdpi, ydpi);
+    return true;
+  }
+
   @Override
   public boolean isExtraBrushSupported(@NonNull String brushName)
   {
@@ -492,10 +551,7 @@ public void drawStrokeWithExtraBrush(@NonNull InkPoints[] vInkPoints, int tempor
     if (vInkPoints.length == 0 || vInkPoints[0].x.length == 0 || style.strokeWidth <= 0.f || android.graphics.Color.alpha(fillPaint.getColor()) == 0)
       return;
 
-    if (!glRenderer.isInitialized())
-    {
-      glRenderer.initialize(keepGLRenderer, canvas.getWidth(), canvas.getHeight(), xdpi, ydpi);
-    }
+    initializeGLRenderer(canvas.getWidth(), canvas.getHeight());
 
     Xfermode xfm = fillPaint.getXfermode();
 
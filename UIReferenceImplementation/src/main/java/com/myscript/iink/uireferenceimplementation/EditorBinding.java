@@ -37,14 +37,29 @@ private void bindEditor(@NonNull EditorView editorView, @Nullable Editor editor)
     if (editor != null)
     {
       editorView.setImageLoader(new ImageLoader(editor));
-      inputController = new InputController(editorView.getContext(), editorView, editor);
     }
     else
     {
       editorView.setImageLoader(null);
+    }
+    bindInput(editorView, editor);
+  }
+
+  private void bindInput(@NonNull EditorView editorView, @Nullable Editor editor)
+  {
+    // the previous controller no longer receives events
+    if (inputController != null)
+      inputController.setInputThreadEnabled(false);
+    if (editor != null)
+    {
+      inputController = new InputController(editorView.getContext(), editorView, editor);
+    }
+    else
+    {
       inputController = null;
     }
     editorView.setOnTouchListener(inputController);
+    editorView.setOnHoverListener(inputController);
   }
 
   @NonNull
@@ -65,4 +80,33 @@ public EditorData openEditor(@Nullable EditorView editorView)
     }
     return new EditorData(editor, renderer, inputController);
   }
+
+  /**
+   * Creates an editor session, which can be retained across configuration changes and attached to successive
+   * views with {@link #openEditor(EditorView, EditorSession)}.
+   *
+   * @return the session, {@code null} if there is no engine.
+   */
+  @Nullable
+  public EditorSession createSession(@NonNull EditorView editorView)
+  {
+    if (engine == null)
+      return null;
+    return new EditorSession(engine, editorView.getResources().getDisplayMetrics(), typefaces);
+  }
+
+  /**
+   * Binds the editor of a (possibly retained) session to the given view, detaching it from its previous view.
+   */
+  @NonNull
+  public EditorData openEditor(@Nullable EditorView editorView, @NonNull EditorSession session)
+  {
+    if (editorView == null)
+      return new EditorData(null, null, null);
+    session.detach();
+    editorView.setTypefaces(typefaces);
+    session.attach(editorView);
+    bindInput(editorView, session.getEditor());
+    return new EditorData(session.getEditor(), session.getRenderer(), inputController);
+  }
 }
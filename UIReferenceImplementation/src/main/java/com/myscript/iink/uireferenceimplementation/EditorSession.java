@@ -0,0 +1,188 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+import android.util.DisplayMetrics;
+
+import com.myscript.iink.Editor;
+import com.myscript.iink.Engine;
+import com.myscript.iink.IRenderTarget;
+import com.myscript.iink.Renderer;
+import com.myscript.iink.graphics.ICanvas;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Holds an editor, its renderer and their caches (images, font metrics, offscreen surfaces) independently of any
+ * view, so that they can outlive an activity recreation (configuration change) and be attached to the new
+ * {@link EditorView}.
+ * <p>
+ * The session is the render target of its renderer, rendering requests are forwarded to the attached view and
+ * dropped while no view is attached (the whole view is invalidated when attaching).
+ */
+public final class EditorSession implements IRenderTarget, AutoCloseable
+{
+  @NonNull
+  private final Renderer renderer;
+  @NonNull
+  private final Editor editor;
+  @NonNull
+  private final ImageLoader imageLoader;
+  @NonNull
+  private final OfflineSurfaceManager offlineSurfaceManager = new OfflineSurfaceManager();
+  @NonNull
+  private final Map<String, Typeface> typefaces;
+  @NonNull
+  private List<Canvas.ExtraBrushConfig> extraBrushConfigs = Collections.emptyList();
+  @Nullable
+  private volatile EditorView editorView = null;
+
+  public EditorSession(@NonNull Engine engine, @NonNull DisplayMetrics displayMetrics, @NonNull Map<String, Typeface> typefaces)
+  {
+    this.typefaces = typefaces;
+    renderer = engine.createRenderer(displayMetrics.xdpi, displayMetrics.ydpi, this);
+    renderer.setViewOffset(0.0f, 0.0f);
+    renderer.setViewScale(1.0f);
+    editor = engine.createEditor(renderer, engine.createToolController());
+    editor.setFontMetricsProvider(new FontMetricsProvider(displayMetrics, typefaces));
+    imageLoader = new ImageLoader(editor);
+  }
+
+  @NonNull
+  public Editor getEditor()
+  {
+    return editor;
+  }
+
+  @NonNull
+  public Renderer getRenderer()
+  {
+    return renderer;
+  }
+
+  @NonNull
+  public ImageLoader getImageLoader()
+  {
+    return imageLoader;
+  }
+
+  @NonNull
+  public OfflineSurfaceManager getOfflineSurfaceManager()
+  {
+    return offlineSurfaceManager;
+  }
+
+  @Nullable
+  public EditorView getEditorView()
+  {
+    return editorView;
+  }
+
+  /**
+   * Attaches the session to a view, which then renders the session content.
+   * The extra brush configurations and typefaces of the view must be set before.
+   */
+  void attach(@NonNull EditorView editorView)
+  {
+    extraBrushConfigs = editorView.getExtraBrushConfigs();
+    editorView.setOfflineSurfaceManager(offlineSurfaceManager);
+    editorView.setImageLoader(imageLoader);
+    this.editorView = editorView;
+    editorView.setEditor(editor);
+  }
+
+  /**
+   * Detaches the session from its view (typically when the activity is destroyed for a configuration change),
+   * the editor and its caches are kept.
+   */
+  public void detach()
+  {
+    EditorView editorView = this.editorView;
+    this.editorView = null;
+    if (editorView != null)
+    {
+      editorView.setOnTouchListener(null);
+      editorView.setOnHoverListener(null);
+      editorView.setEditor(null);
+      editorView.setImageLoader(null);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    detach();
+    if (!editor.isClosed())
+      editor.close();
+    if (!renderer.isClosed())
+      renderer.close();
+  }
+
+  @Override
+  public void invalidate(@NonNull Renderer renderer, @NonNull EnumSet<LayerType> layers)
+  {
+    EditorView editorView = this.editorView;
+    if (editorView != null)
+      editorView.invalidate(renderer, layers);
+  }
+
+  @Override
+  public void invalidate(@NonNull Renderer renderer, int x, int y, int width, int height, @NonNull EnumSet<LayerType> layers)
+  {
+    EditorView editorView = this.editorView;
+    if (editorView != null)
+      editorView.invalidate(renderer, x, y, width, height, layers);
+  }
+
+  @Override
+  public boolean supportsOffscreenRendering()
+  {
+    return true;
+  }
+
+  @Override
+  public float getPixelDensity()
+  {
+    return 1f;
+  }
+
+  @Override
+  public int createOffscreenRenderSurface(int width, int height, boolean alphaOnly)
+  {
+    return offlineSurfaceManager.create(width, height, alphaOnly);
+  }
+
+  @Override
+  public void releaseOffscreenRenderSurface(int offscreenID)
+  {
+    offlineSurfaceManager.release(offscreenID);
+  }
+
+  @Override
+  public ICanvas createOffscreenRenderCanvas(int offscreenID)
+  {
+    if (offscreenID < 0)
+      return null;
+    Bitmap offlineBitmap = offlineSurfaceManager.getBitmap(offscreenID);
+    if (offlineBitmap == null)
+      return null;
+    android.graphics.Canvas canvas = new android.graphics.Canvas(offlineBitmap);
+    return new Canvas(canvas, extraBrushConfigs, typefaces, imageLoader, offlineSurfaceManager, renderer.getDpiX(), renderer.getDpiY());
+  }
+
+  @Override
+  public void showScrollbars()
+  {
+    EditorView editorView = this.editorView;
+    if (editorView != null)
+      editorView.showScrollbars();
+  }
+}
@@ -22,6 +22,7 @@
 import java.util.List;
 import java.util.Map;
 
+import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -37,10 +38,20 @@ public class EditorView extends FrameLayout implements IRenderTarget, InputContr
   @Nullable
   private ImageLoader imageLoader;
   @NonNull
-  private final OfflineSurfaceManager offlineSurfaceManager;
+  private OfflineSurfaceManager offlineSurfaceManager;
   @Nullable
   private LayerView layerView;
 
+  // scroll range of the content, refreshed when the content, the view size or the view scale change
+  private volatile boolean isScrollRangeDirty = true;
+  @Nullable
+  private Point scrollMinPx = null;
+  @Nullable
+  private Point scrollMaxPx = null;
+  private float scrollRangeViewScale = 0.0f;
+  private int scrollRangeViewWidth = 0;
+  private int scrollRangeViewHeight = 0;
+
   private Map<String, Typeface> typefaceMap = new HashMap<>();
   @NonNull
   private List<Canvas.ExtraBrushConfig> extraBrushConfigs = Collections.emptyList();
@@ -98,6 +109,7 @@ protected void onFinishInflate()
   public void setEditor(@Nullable Editor editor)
   {
     this.editor = editor;
+    isScrollRangeDirty = true;
     if (editor != null)
     {
       renderer = editor.getRenderer();
@@ -154,6 +166,18 @@ public List<Canvas.ExtraBrushConfig> getExtraBrushConfigs()
     return extraBrushConfigs;
   }
 
+  /**
+   * Shares the offscreen surfaces of an editor that outlives this view (see {@link EditorSession}).
+   */
+  public void setOfflineSurfaceManager(@NonNull OfflineSurfaceManager offlineSurfaceManager)
+  {
+    this.offlineSurfaceManager = offlineSurfaceManager;
+    if (layerView != null)
+    {
+      layerView.setOfflineSurfaceManager(offlineSurfaceManager);
+    }
+  }
+
   public void setImageLoader(ImageLoader imageLoader)
   {
     this.imageLoader = imageLoader;
@@ -195,6 +219,147 @@ public Map<String, Typeface> getTypefaces()
     return typefaceMap;
   }
 
+  /**
+   * Enables the prefetch of the content around the viewport during idle time, to speed up scrolling.
+   *
+   * @param prefetchMargin the margin around the viewport (in pixels), 0 disables prefetching.
+   */
+  public void setPrefetchMargin(int prefetchMargin)
+  {
+    if (layerView != null)
+    {
+      layerView.setPrefetchMargin(prefetchMargin);
+    }
+  }
+
+  /**
+   * Enables caching the model and capture layers separately, so that capture updates only repaint the area
+   * of the newest samples.
+   *
+   * @param enabled {@code true} to enable layer caching.
+   */
+  public void setLayerCacheEnabled(boolean enabled)
+  {
+    if (layerView != null)
+    {
+      layerView.setLayerCacheEnabled(enabled);
+    }
+  }
+
+  /**
+   * Provides the area (in view coordinates) where the newest capture samples will be drawn.
+   */
+  public void addCaptureUpdateHint(int left, int top, int right, int bottom)
+  {
+    if (layerView != null)
+    {
+      layerView.addCaptureUpdateHint(left, top, right, bottom);
+    }
+  }
+
+  /**
+   * Sets the location (in view coordinates) around which large updates are rendered first.
+   */
+  public void setRenderFocus(float x, float y)
+  {
+    if (layerView != null)
+    {
+      layerView.setRenderFocus(x, y);
+    }
+  }
+
+  /**
+   * Enables measuring the pen-to-pixel latency of the strokes written in this view.
+   *
+   * @param latencyTracker the tracker, {@code null} to disable measuring.
+   */
+  public void setLatencyTracker(@Nullable LatencyTracker latencyTracker)
+  {
+    if (layerView != null)
+    {
+      layerView.setLatencyTracker(latencyTracker);
+    }
+  }
+
+  @Nullable
+  public LatencyTracker getLatencyTracker()
+  {
+    return layerView != null ? layerView.getLatencyTracker() : null;
+  }
+
+  /**
+   * Displays a predicted stroke segment (in view coordinates) on top of the content, replacing the previous one.
+   */
+  public void setPredictedSegment(float fromX, float fromY, float toX, float toY, float width, @ColorInt int color)
+  {
+    if (layerView != null)
+    {
+      layerView.setPredictedSegment(fromX, fromY, toX, toY, width, color);
+    }
+  }
+
+  public void clearPredictedSegment()
+  {
+    if (layerView != null)
+    {
+      layerView.clearPredictedSegment();
+    }
+  }
+
+  public void clearCaptureUpdateHint()
+  {
+    if (layerView != null)
+    {
+      layerView.clearCaptureUpdateHint();
+    }
+  }
+
+  /**
+   * Prepares capture rendering ahead of the first stroke, typically when a stylus starts hovering the view.
+   * Must be called from the UI thread.
+   *
+   * @return the time spent preparing, in ms, 0 if already prepared.
+   */
+  public float warmUpCapture()
+  {
+    return layerView != null ? layerView.warmUpCapture() : 0;
+  }
+
+  /**
+   * Stops preparing content around the viewport, typically when input starts.
+   */
+  public void cancelPrefetch()
+  {
+    if (layerView != null)
+    {
+      layerView.cancelPrefetch();
+    }
+  }
+
+  /**
+   * Suspends preparing content around the viewport while the user interacts with the view, until resumed.
+   */
+  public void setPrefetchSuspended(boolean suspended)
+  {
+    if (layerView != null)
+    {
+      layerView.setPrefetchSuspended(suspended);
+    }
+  }
+
+  /**
+   * Invalidates the view after a viewport change (scroll) that did not modify the content.
+   *
+   * @param renderer the renderer of the displayed content.
+   */
+  public final void invalidateViewport(@NonNull Renderer renderer)
+  {
+    if (layerView != null)
+    {
+      layerView.updateViewport(renderer);
+    }
+  }
+
   @Override
   protected void onSizeChanged(int newWidth, int newHeight, int oldWidth, int oldHeight)
   {
@@ -203,8 +368,9 @@ protected void onSizeChanged(int newWidth, int newHeight, int oldWidth, int oldH
 
     if (editor != null)
     {
+      // the layer view renders the newly exposed areas once resized itself
       editor.setViewSize(newWidth, newHeight);
-      invalidate(renderer, EnumSet.allOf(IRenderTarget.LayerType.class));
+      isScrollRangeDirty = true;
     }
 
     super.onSizeChanged(newWidth, newHeight, oldWidth, oldHeight);
@@ -222,9 +388,13 @@ public final void invalidate(@NonNull Renderer renderer, int x, int y, int width
     if (width <= 0 || height <= 0)
       return;
 
+    // the content (hence its scroll range) may have changed
+    if (layers.contains(LayerType.MODEL))
+      isScrollRangeDirty = true;
+
     if (layerView != null)
     {
-      layerView.update(renderer, x, y, width, height);
+      layerView.update(renderer, x, y, width, height, layers);
     }
   }
 
@@ -298,10 +468,26 @@ public void showScrollbars()
   {
     int viewHeightPx = editor.getViewHeight();
     int viewWidthPx = editor.getViewWidth();
-    Point topLeftPx = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
-    Point bottomRightPx = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
-    editor.clampViewOffset(topLeftPx);
-    editor.clampViewOffset(bottomRightPx);
+    Point topLeftPx;
+    Point bottomRightPx;
+    synchronized (this)
+    {
+      float viewScale = renderer.getViewScale();
+      if (isScrollRangeDirty || scrollMinPx == null || scrollMaxPx == null || viewScale != scrollRangeViewScale
+          || viewWidthPx != scrollRangeViewWidth || viewHeightPx != scrollRangeViewHeight)
+      {
+        isScrollRangeDirty = false;
+        scrollMinPx = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        scrollMaxPx = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        editor.clampViewOffset(scrollMinPx);
+        editor.clampViewOffset(scrollMaxPx);
+        scrollRangeViewScale = viewScale;
+        scrollRangeViewWidth = viewWidthPx;
+        scrollRangeViewHeight = viewHeightPx;
+      }
+      topLeftPx = scrollMinPx;
+      bottomRightPx = scrollMaxPx;
+    }
     float pageHeightPx = bottomRightPx.y - topLeftPx.y + viewHeightPx;
     float pageWidthPx = bottomRightPx.x - topLeftPx.x + viewWidthPx;
     layerView.setScrollbar(renderer, viewWidthPx, (int) pageWidthPx, (int) topLeftPx.x, viewHeightPx, (int) pageHeightPx, (int) topLeftPx.y);
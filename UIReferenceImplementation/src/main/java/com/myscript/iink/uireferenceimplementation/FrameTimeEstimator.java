@@ -41,7 +41,7 @@ static public float getFrameTime(@NonNull Context context)
     return getFastestFrameTimeMs(context);
   }
 
-  private static Display getDisplayForContext(Context context)
+  static Display getDisplayForContext(@NonNull Context context)
   {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R)
     {
@@ -0,0 +1,199 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.view.Choreographer;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Tracks the effective frame time of the display at runtime, unlike {@link FrameTimeEstimator} which provides the
+ * fastest supported one.
+ * <p>
+ * The nominal frame time comes from the current display mode, updated on refresh rate switches (variable refresh
+ * rate, power saving). It is then measured over a short window of frame callbacks (started with the tracker, on
+ * display changes and on {@link #sample()}): missed frames make the effective frame time longer than the nominal one.
+ * The listener is notified when the effective frame time changes. Must be used from the UI thread.
+ */
+public final class FrameTimeTracker implements Choreographer.FrameCallback, DisplayManager.DisplayListener
+{
+  public interface Listener
+  {
+    void onFrameTimeChanged(float frameTimeMs);
+  }
+
+  private static final float MS_IN_A_SECOND = 1000f;
+  private static final float NS_IN_A_MS = 1000000f;
+  private static final int SAMPLE_FRAMES = 30;
+  // intervals longer than this ratio of the nominal frame time are idle periods, not frames
+  private static final float MAX_INTERVAL_RATIO = 4.0f;
+  // changes smaller than this are not notified
+  private static final float MIN_CHANGE_MS = 0.5f;
+
+  @NonNull
+  private final DisplayManager displayManager;
+  private final int displayId;
+  @NonNull
+  private final Listener listener;
+
+  private float nominalFrameTimeMs;
+  private float frameTimeMs;
+  private boolean isStarted = false;
+  private boolean isSampling = false;
+  private long lastFrameTimeNanos = 0;
+  private long sampledNanos = 0;
+  private int sampledFrames = 0;
+  private int remainingFrames = 0;
+
+  public FrameTimeTracker(@NonNull Context context, @NonNull Listener listener)
+  {
+    this.listener = listener;
+    displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    Display display = FrameTimeEstimator.getDisplayForContext(context);
+    displayId = display.getDisplayId();
+    nominalFrameTimeMs = MS_IN_A_SECOND / display.getRefreshRate();
+    frameTimeMs = nominalFrameTimeMs;
+  }
+
+  /**
+   * @return the effective frame time, in ms.
+   */
+  public float getFrameTime()
+  {
+    return frameTimeMs;
+  }
+
+  /**
+   * @return the frame time of the current display mode, in ms.
+   */
+  public float getNominalFrameTime()
+  {
+    return nominalFrameTimeMs;
+  }
+
+  public void start()
+  {
+    if (isStarted)
+      return;
+    isStarted = true;
+    displayManager.registerDisplayListener(this, null);
+    updateNominalFrameTime();
+    sample();
+  }
+
+  public void stop()
+  {
+    if (!isStarted)
+      return;
+    isStarted = false;
+    displayManager.unregisterDisplayListener(this);
+    if (isSampling)
+    {
+      isSampling = false;
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+  }
+
+  /**
+   * Measures the frame time over the next frames, typically while the content is being updated (e.g. after a
+   * stroke) so that the measure reflects the frame rate when rendering.
+   */
+  public void sample()
+  {
+    if (!isStarted)
+      return;
+    remainingFrames = SAMPLE_FRAMES;
+    if (!isSampling)
+    {
+      isSampling = true;
+      lastFrameTimeNanos = 0;
+      sampledNanos = 0;
+      sampledFrames = 0;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos)
+  {
+    if (!isSampling)
+      return;
+
+    if (lastFrameTimeNanos != 0)
+    {
+      long interval = frameTimeNanos - lastFrameTimeNanos;
+      if (interval / NS_IN_A_MS <= MAX_INTERVAL_RATIO * nominalFrameTimeMs)
+      {
+        sampledNanos += interval;
+        ++sampledFrames;
+      }
+    }
+    lastFrameTimeNanos = frameTimeNanos;
+
+    if (--remainingFrames > 0)
+    {
+      Choreographer.getInstance().postFrameCallback(this);
+      return;
+    }
+
+    isSampling = false;
+    if (sampledFrames > 0)
+    {
+      // frames are not faster than the display mode, measures only reveal missed frames
+      float measuredFrameTimeMs = sampledNanos / NS_IN_A_MS / sampledFrames;
+      setFrameTime(Math.max(nominalFrameTimeMs, measuredFrameTimeMs));
+    }
+  }
+
+  @Override
+  public void onDisplayAdded(int displayId)
+  {
+    // no-op
+  }
+
+  @Override
+  public void onDisplayRemoved(int displayId)
+  {
+    // no-op
+  }
+
+  @Override
+  public void onDisplayChanged(int displayId)
+  {
+    if (displayId != this.displayId)
+      return;
+    updateNominalFrameTime();
+    sample();
+  }
+
+  private void updateNominalFrameTime()
+  {
+    Display display = displayManager.getDisplay(displayId);
+    if (display == null)
+      return;
+    float refreshRate = display.getRefreshRate();
+    if (refreshRate <= 0)
+      return;
+    nominalFrameTimeMs = MS_IN_A_SECOND / refreshRate;
+    // until measured, the display mode is the best estimate
+    setFrameTime(nominalFrameTimeMs);
+  }
+
+  private void setFrameTime(float newFrameTimeMs)
+  {
+    if (Math.abs(newFrameTimeMs - frameTimeMs) < MIN_CHANGE_MS)
+      return;
+    frameTimeMs = newFrameTimeMs;
+    listener.onFrameTimeChanged(newFrameTimeMs);
+  }
+
+  @NonNull
+  @Override
+  public String toString()
+  {
+    return "frame time: " + frameTimeMs + " ms (display mode: " + nominalFrameTimeMs + " ms)";
+  }
+}
@@ -7,4 +7,12 @@
 public interface IInputControllerListener
 {
   boolean onLongPress(final float x, final float y, final @Nullable String contentBlockId);
+
+  /**
+   * Called when a pen or highlighter stroke starts, e.g. to measure the rendering while writing.
+   */
+  default void onStrokeStart()
+  {
+    // no-op
+  }
 }
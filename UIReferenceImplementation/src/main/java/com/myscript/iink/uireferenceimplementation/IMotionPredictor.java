@@ -0,0 +1,49 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Predicts where the pen will be a short time ahead, from the samples of the stroke being written.
+ * The predicted samples are only displayed, they are discarded when the real samples arrive.
+ */
+public interface IMotionPredictor
+{
+  final class Sample
+  {
+    public float x;
+    public float y;
+    public long t; // in ms
+    public float pressure;
+    public float tilt;
+    public float orientation;
+
+    public void set(@NonNull Sample other)
+    {
+      x = other.x;
+      y = other.y;
+      t = other.t;
+      pressure = other.pressure;
+      tilt = other.tilt;
+      orientation = other.orientation;
+    }
+  }
+
+  /**
+   * Starts a new stroke.
+   */
+  void reset();
+
+  /**
+   * Adds a real sample of the current stroke, samples are provided in chronological order.
+   */
+  void addSample(@NonNull Sample sample);
+
+  /**
+   * Predicts the sample at the given time.
+   *
+   * @return {@code false} if no prediction can be made (not enough samples).
+   */
+  boolean predict(long t, @NonNull Sample prediction);
+}
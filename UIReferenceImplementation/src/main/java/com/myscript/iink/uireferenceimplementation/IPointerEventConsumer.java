@@ -0,0 +1,23 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.PointerType;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives pointer events, as the pointer methods of an {@link com.myscript.iink.Editor} do. Times are in ms.
+ *
+ * @see InputLogPlayer
+ */
+public interface IPointerEventConsumer
+{
+  void pointerDown(float x, float y, long t, float f, float tilt, float orientation, @NonNull PointerType pointerType, int pointerId);
+
+  void pointerMove(float x, float y, long t, float f, float tilt, float orientation, @NonNull PointerType pointerType, int pointerId);
+
+  void pointerUp(float x, float y, long t, float f, float tilt, float orientation, @NonNull PointerType pointerType, int pointerId);
+
+  void pointerCancel(int pointerId);
+}
@@ -3,8 +3,10 @@
 package com.myscript.iink.uireferenceimplementation;
 
 import android.content.Context;
+import android.graphics.Color;
 import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -23,10 +25,12 @@
 
 import java.util.EnumSet;
 
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
-public class InputController implements View.OnTouchListener, GestureDetector.OnGestureListener, ScaleGestureDetector.OnScaleGestureListener
+public class InputController implements View.OnTouchListener, View.OnHoverListener, GestureDetector.OnGestureListener, ScaleGestureDetector.OnScaleGestureListener
 {
 
   public interface ViewListener
@@ -42,6 +46,8 @@ public class InputController implements View.OnTouchListener, GestureDetector.On
 
   private static final float SCALING_SENSIBILITY = 1.5f;
   private static final float SCALING_THRESHOLD = 0.02f;
+  private static final float CAPTURE_HINT_PADDING_PX = 2.0f;
+  private static final float MM_PER_INCH = 25.4f;
 
   private final EditorView editorView;
   private final Editor editor;
@@ -63,6 +69,82 @@ public class InputController implements View.OnTouchListener, GestureDetector.On
 
   private boolean isScrollingEnabled = true;
 
+  // viewport changes of scroll and scale gestures, applied once per frame
+  private float pendingScrollX = 0.0f;
+  private float pendingScrollY = 0.0f;
+  private float pendingZoomFactor = 1.0f;
+  private float pendingZoomFocusX;
+  private float pendingZoomFocusY;
+  private boolean isPendingScale = false;
+  private boolean isViewportUpdateScheduled = false;
+  private final Choreographer.FrameCallback viewportCallback = frameTimeNanos -> applyViewportUpdate();
+
+  private float captureStrokeWidth = 0.0f;
+  private boolean isCaptureHintEnabled = false;
+  private float lastCaptureX;
+  private float lastCaptureY;
+
+  // pointer events reused for each batch of historical samples
+  private final PointerEventBatch eventBatch = new PointerEventBatch(false);
+  private final PointerEventBatch tiltEventBatch = new PointerEventBatch(true);
+
+  // move samples coalesced across motion events, sent once per frame
+  private boolean isEventCoalescingEnabled = false;
+  private final PointerEventBatch pendingEventBatch = new PointerEventBatch(false);
+  private final PointerEventBatch pendingTiltEventBatch = new PointerEventBatch(true);
+  private int pendingEventCount = 0;
+  private boolean pendingWithTilt = false;
+  private boolean isFlushScheduled = false;
+  // client-side prediction of the stroke being written, displayed on top of the capture layer
+  @Nullable
+  private IMotionPredictor motionPredictor = null;
+  @NonNull
+  private final MotionPredictionMetrics predictionMetrics = new MotionPredictionMetrics();
+  private final IMotionPredictor.Sample predictorSample = new IMotionPredictor.Sample();
+  private final IMotionPredictor.Sample predictedSample = new IMotionPredictor.Sample();
+  private long predictionHorizonMs;
+  @ColorInt
+  private int predictionColor = Color.BLACK;
+  private float predictionWidth = 0.0f;
+  private boolean isPredicting = false;
+
+  // measures the latency of the current stroke, if any
+  @Nullable
+  private LatencyTracker trackedLatency = null;
+
+  @Nullable
+  private InputRecorder inputRecorder = null;
+
+  // drops the redundant move samples of high-rate digitizers, if any
+  @Nullable
+  private SampleDecimator sampleDecimator = null;
+
+  // time spent preparing capture rendering ahead of the first stroke, if any
+  private float captureWarmUpTimeMs = 0;
+
+  // when set, owns the pointer calls to the editor
+  @Nullable
+  private PointerInputThread inputThread = null;
+  // sequence number of the samples queued to the input thread or coalesced, to track when the editor consumed them
+  private long inputSequence = 0;
+  private final Choreographer.FrameCallback flushCallback = frameTimeNanos -> {
+    isFlushScheduled = false;
+    // the editor may have been closed since the samples were queued
+    if (editor.isClosed())
+    {
+      pendingEventCount = 0;
+      return;
+    }
+    try
+    {
+      flushPendingEvents();
+    }
+    catch (UnsupportedOperationException e)
+    {
+      Log.e("InputController", "bad touch sequence", e);
+    }
+  };
+
   public InputController(Context context, EditorView editorView, Editor editor)
   {
     this.editorView = editorView;
@@ -72,6 +154,8 @@ public InputController(Context context, EditorView editorView, Editor editor)
     scaleGestureDetector = new ScaleGestureDetector(context, this);
     gestureDetector = new GestureDetector(context, this);
 
+    predictionHorizonMs = (long) FrameTimeEstimator.getFrameTime(context);
+
     long rel_t = SystemClock.uptimeMillis();
     long abs_t = System.currentTimeMillis();
     eventTimeOffset = abs_t - rel_t;
@@ -106,6 +190,132 @@ public final synchronized void setScrollingEnabled(boolean enabled) {
     isScrollingEnabled = enabled;
   }
 
+  /**
+   * Enables coalescing move samples across motion events, so that they are sent to the editor in a single batch
+   * per frame instead of once per motion event. Pending samples are sent before any down, up or cancel.
+   */
+  public final synchronized void setEventCoalescingEnabled(boolean enabled)
+  {
+    isEventCoalescingEnabled = enabled;
+  }
+
+  /**
+   * Sets the client-side predictor of the pen strokes being written. The predicted end of the stroke is displayed
+   * on top of the capture layer and replaced as real samples arrive.
+   * The engine prediction ({@code renderer.prediction.enable}) should be disabled when using a client-side predictor.
+   *
+   * @param motionPredictor the predictor, {@code null} to disable client-side prediction.
+   */
+  public final synchronized void setMotionPredictor(@Nullable IMotionPredictor motionPredictor)
+  {
+    this.motionPredictor = motionPredictor;
+  }
+
+  /**
+   * @param horizonMs how far ahead of the last sample the stroke is predicted, one frame by default.
+   */
+  public final synchronized void setPredictionHorizon(long horizonMs)
+  {
+    predictionHorizonMs = horizonMs;
+  }
+
+  /**
+   * Sets the style of the displayed predicted strokes, which should match the pen style.
+   *
+   * @param widthMm the stroke width, in millimeters.
+   */
+  public final synchronized void setPredictionStyle(@ColorInt int color, float widthMm)
+  {
+    predictionColor = color;
+    predictionWidth = widthMm;
+  }
+
+  /**
+   * @return the accuracy metrics of the client-side predictions.
+   */
+  @NonNull
+  public final MotionPredictionMetrics getPredictionMetrics()
+  {
+    return predictionMetrics;
+  }
+
+  /**
+   * Records the received motion events, to replay them later with {@link InputReplayer}.
+   *
+   * @param inputRecorder the recorder, {@code null} to stop recording (the recorder is not closed).
+   */
+  public final synchronized void setInputRecorder(@Nullable InputRecorder inputRecorder)
+  {
+    this.inputRecorder = inputRecorder;
+  }
+
+  /**
+   * Sets the decimator of the move samples, so that samples which do not change the stroke shape are not sent to
+   * the editor. The reduction ratio is available from the decimator.
+   *
+   * @param sampleDecimator the decimator, {@code null} to send all the samples.
+   */
+  public final synchronized void setSampleDecimator(@Nullable SampleDecimator sampleDecimator)
+  {
+    this.sampleDecimator = sampleDecimator;
+  }
+
+  /**
+   * Enables sending the pointer events to the editor from a dedicated high priority thread, so that ink capture
+   * is not delayed by the UI thread load. Gesture detection (scroll, scale, long press) stays on the UI thread.
+   * The thread must be disabled before the editor is closed. Must be called from the UI thread.
+   */
+  public final synchronized void setInputThreadEnabled(boolean enabled)
+  {
+    if (enabled && inputThread == null)
+    {
+      flushPendingEvents();
+      inputThread = new PointerInputThread(editor, inputSequence);
+      inputThread.start();
+    }
+    else if (!enabled && inputThread != null)
+    {
+      inputThread.quit();
+      inputSequence = inputThread.getEnqueuedCount();
+      inputThread = null;
+    }
+  }
+
+  /**
+   * Prepares capture rendering (extra brush renderer) ahead of the first stroke, so that it does not stutter.
+   * Called when a stylus starts hovering the view, can also be called when a pen tool is selected.
+   * Must be called from the UI thread.
+   */
+  public final void warmUpCapture()
+  {
+    if (editor.isClosed())
+      return;
+    float timeMs = editorView.warmUpCapture();
+    if (timeMs > 0)
+    {
+      captureWarmUpTimeMs = timeMs;
+      Log.d("InputController", "capture warm-up: " + timeMs + " ms");
+    }
+  }
+
+  /**
+   * @return the time (in ms) of the last capture warm-up that had something to prepare, 0 if none.
+   */
+  public final float getCaptureWarmUpTimeMs()
+  {
+    return captureWarmUpTimeMs;
+  }
+
+  /**
+   * Sets the width of the strokes being captured, used to size the capture area repainted for new samples.
+   *
+   * @param widthMm the stroke width, in millimeters.
+   */
+  public final synchronized void setCaptureStrokeWidth(float widthMm)
+  {
+    captureStrokeWidth = widthMm;
+  }
+
   public final synchronized IInputControllerListener getListener()
   {
     return _listener;
@@ -123,6 +333,9 @@ private boolean handleOnTouchForPointer(MotionEvent event, int actionMask, int p
     final int historySize = event.getHistorySize();
     final boolean useTiltInfo = pointerType == MotionEvent.TOOL_TYPE_STYLUS;
 
+    if (actionMask == MotionEvent.ACTION_DOWN || actionMask == MotionEvent.ACTION_UP)
+      editorView.setRenderFocus(event.getX(pointerIndex), event.getY(pointerIndex));
+
     int inputMode = getInputMode();
     if (inputMode == INPUT_MODE_FORCE_PEN)
     {
@@ -164,9 +377,20 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
       case MotionEvent.ACTION_POINTER_DOWN:
       {
         isMultiFingerTouch = true;
+        flushPendingEvents();
+        endPrediction();
+        endLatencyTracking(null);
         if (previousPointerId != -1)
         {
-          editor.pointerCancel(previousPointerId);
+          if (inputThread != null)
+          {
+            inputThread.enqueueCancel(previousPointerId);
+            inputThread.signal();
+          }
+          else
+          {
+            editor.pointerCancel(previousPointerId);
+          }
           previousPointerId = -1;
         }
         return true;
@@ -175,12 +399,35 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
       {
         previousPointerId = pointerId;
         isMultiFingerTouch = false;
+        flushPendingEvents();
+        // Free the UI thread from viewport prefetching while input is in progress, until up or cancel
+        editorView.setPrefetchSuspended(true);
         // Request unbuffered events for tools that require low capture latency
         ToolController toolController = editor.getToolController();
         PointerTool tool = toolController.getToolForType(iinkPointerType);
         if (tool == PointerTool.PEN || tool == PointerTool.HIGHLIGHTER)
           editorView.requestUnbufferedDispatch(event);
 
+        isCaptureHintEnabled = tool == PointerTool.PEN || tool == PointerTool.HIGHLIGHTER;
+        lastCaptureX = event.getX(pointerIndex);
+        lastCaptureY = event.getY(pointerIndex);
+        startPrediction(event, pointerIndex, tool);
+        trackedLatency = isCaptureHintEnabled ? editorView.getLatencyTracker() : null;
+        IInputControllerListener listener = getListener();
+        if (isCaptureHintEnabled && listener != null)
+          listener.onStrokeStart();
+        startDecimation(event, pointerIndex, pointerId);
+
+        if (inputThread != null)
+        {
+          if (trackedLatency != null)
+            inputThread.setLatencyTracker(trackedLatency);
+          inputThread.enqueue(PointerInputThread.DOWN, event, pointerIndex, -1, eventTimeOffset, useTiltInfo, iinkPointerType, pointerId);
+          markLatencyInput(event);
+          inputThread.signal();
+          return true;
+        }
+
         try
         {
           if (useTiltInfo)
@@ -198,6 +445,7 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
           else
             editor.pointerDown(event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(), event.getPressure(), iinkPointerType, pointerId);
         }
+        markLatencyInput(event);
         return true;
       }
       case MotionEvent.ACTION_MOVE:
@@ -205,29 +453,24 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
         if (isMultiFingerTouch)
           return true;
 
-        if (historySize > 0)
+        hintCaptureUpdate(event, pointerIndex, historySize);
+        updatePrediction(event, pointerIndex, historySize);
+
+        if (inputThread != null)
         {
-          PointerEvent[] pointerEvents = new PointerEvent[historySize + 1];
-          if (useTiltInfo)
-          {
-            for (int i = 0; i < historySize; ++i)
-            {
-              pointerEvents[i] = new PointerEvent(PointerEventType.MOVE, event.getHistoricalX(pointerIndex, i), event.getHistoricalY(pointerIndex, i), eventTimeOffset + event.getHistoricalEventTime(i),
-                  event.getHistoricalPressure(pointerIndex, i), event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, pointerIndex, i), event.getHistoricalAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex, i), iinkPointerType, pointerId);
-            }
-            pointerEvents[historySize] = new PointerEvent(PointerEventType.MOVE, event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(),
-                event.getPressure(), event.getAxisValue(MotionEvent.AXIS_TILT, pointerIndex), event.getAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex), iinkPointerType, pointerId);
-          }
-          else
-          {
-            for (int i = 0; i < historySize; ++i)
-            {
-              pointerEvents[i] = new PointerEvent(PointerEventType.MOVE, event.getHistoricalX(pointerIndex, i), event.getHistoricalY(pointerIndex, i), eventTimeOffset + event.getHistoricalEventTime(i),
-                  event.getHistoricalPressure(pointerIndex, i), iinkPointerType, pointerId);
-            }
-            pointerEvents[historySize] = new PointerEvent(PointerEventType.MOVE, event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(), event.getPressure(), iinkPointerType, pointerId);
-          }
-          editor.pointerEvents(pointerEvents, true);
+          enqueueSamples(inputThread, event, pointerIndex, historySize, true, useTiltInfo, pointerId);
+          markLatencyInput(event);
+          inputThread.signal();
+          return true;
+        }
+        if (isEventCoalescingEnabled)
+        {
+          queueMoves(event, pointerIndex, historySize, useTiltInfo, pointerId);
+        }
+        else if (historySize > 0 || sampleDecimator != null)
+        {
+          // (the decimator may keep the current sample and a pressure peak, sent as a batch)
+          sendHistory(event, pointerIndex, historySize, true, useTiltInfo, pointerId);
         }
         else // no history
         {
@@ -237,6 +480,7 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
           else
             editor.pointerMove(event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(), event.getPressure(), iinkPointerType, pointerId);
         }
+        markLatencyInput(event);
         return true;
       }
       // ACTION_POINTER_UP is "A non-primary pointer has gone up", at least one finger is still on the touchscreen.
@@ -246,31 +490,26 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
       }
       case MotionEvent.ACTION_UP:
       {
+        editorView.setPrefetchSuspended(false);
         if (isMultiFingerTouch)
         {
           isMultiFingerTouch = false;
           return true;
         }
+        flushPendingEvents();
+        if (inputThread != null)
+        {
+          enqueueSamples(inputThread, event, pointerIndex, historySize, false, useTiltInfo, pointerId);
+          inputThread.enqueue(PointerInputThread.UP, event, pointerIndex, -1, eventTimeOffset, useTiltInfo, iinkPointerType, pointerId);
+          inputThread.signal();
+          endCaptureHint();
+          endPrediction();
+          endLatencyTracking(event);
+          return true;
+        }
         if (historySize > 0)
         {
-          PointerEvent[] pointerEvents = new PointerEvent[historySize];
-          if (useTiltInfo)
-          {
-            for (int i = 0; i < historySize; ++i)
-            {
-              pointerEvents[i] = new PointerEvent(PointerEventType.MOVE, event.getHistoricalX(pointerIndex, i), event.getHistoricalY(pointerIndex, i), eventTimeOffset + event.getHistoricalEventTime(i),
-                  event.getHistoricalPressure(pointerIndex, i), event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, pointerIndex, i), event.getHistoricalAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex, i), iinkPointerType, pointerId);
-            }
-          }
-          else
-          {
-            for (int i = 0; i < historySize; ++i)
-            {
-              pointerEvents[i] = new PointerEvent(PointerEventType.MOVE, event.getHistoricalX(pointerIndex, i), event.getHistoricalY(pointerIndex, i), eventTimeOffset + event.getHistoricalEventTime(i),
-                  event.getHistoricalPressure(pointerIndex, i), iinkPointerType, pointerId);
-            }
-          }
-          editor.pointerEvents(pointerEvents, true);
+          sendHistory(event, pointerIndex, historySize, false, useTiltInfo, pointerId);
         }
         if (useTiltInfo)
           editor.pointerUp(event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(),
@@ -278,11 +517,27 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
         else
           editor.pointerUp(event.getX(pointerIndex), event.getY(pointerIndex), eventTimeOffset + event.getEventTime(), event.getPressure(), iinkPointerType, pointerId);
 
+        endCaptureHint();
+        endPrediction();
+        endLatencyTracking(event);
         return true;
       }
       case MotionEvent.ACTION_CANCEL:
       {
-        editor.pointerCancel(pointerId);
+        editorView.setPrefetchSuspended(false);
+        flushPendingEvents();
+        if (inputThread != null)
+        {
+          inputThread.enqueueCancel(pointerId);
+          inputThread.signal();
+        }
+        else
+        {
+          editor.pointerCancel(pointerId);
+        }
+        endCaptureHint();
+        endPrediction();
+        endLatencyTracking(null);
         return true;
       }
       default:
@@ -290,6 +545,317 @@ else if (inputMode == INPUT_MODE_FORCE_TOUCH)
     }
   }
 
+  /**
+   * Sends the historical samples of a motion event (and optionally its current sample) to the editor as a
+   * single batch, reusing the same pointer events from one motion event to the next.
+   */
+  private void sendHistory(MotionEvent event, int pointerIndex, int historySize, boolean withCurrent, boolean useTiltInfo, int pointerId)
+  {
+    PointerEventBatch batch = useTiltInfo ? tiltEventBatch : eventBatch;
+    // one more for a pressure peak kept by the decimator
+    batch.ensureCapacity(historySize + 2);
+    int count = fillSamples(batch, 0, event, pointerIndex, historySize, withCurrent, useTiltInfo, pointerId);
+    if (count > 0)
+      editor.pointerEvents(batch.obtain(count), true);
+  }
+
+  /**
+   * Appends the samples of a move event to the pending batch, sent to the editor once per frame
+   * (or earlier when another action requires it).
+   */
+  private void queueMoves(MotionEvent event, int pointerIndex, int historySize, boolean useTiltInfo, int pointerId)
+  {
+    // a batch either carries tilt information or not
+    if (pendingEventCount > 0 && pendingWithTilt != useTiltInfo)
+      flushPendingEvents();
+
+    PointerEventBatch batch = useTiltInfo ? pendingTiltEventBatch : pendingEventBatch;
+    batch.ensureCapacity(pendingEventCount + historySize + 2);
+    pendingEventCount = fillSamples(batch, pendingEventCount, event, pointerIndex, historySize, true, useTiltInfo, pointerId);
+    pendingWithTilt = useTiltInfo;
+
+    if (!isFlushScheduled)
+    {
+      isFlushScheduled = true;
+      Choreographer.getInstance().postFrameCallback(flushCallback);
+    }
+  }
+
+  private void flushPendingEvents()
+  {
+    if (pendingEventCount == 0)
+      return;
+    PointerEventBatch batch = pendingWithTilt ? pendingTiltEventBatch : pendingEventBatch;
+    PointerEvent[] pointerEvents = batch.obtain(pendingEventCount);
+    pendingEventCount = 0;
+    editor.pointerEvents(pointerEvents, true);
+    ++inputSequence;
+    LatencyTracker tracker = editorView.getLatencyTracker();
+    if (tracker != null)
+      tracker.markConsumed(inputSequence);
+  }
+
+  /**
+   * Queues the move samples of a motion event (and optionally its current sample) to the input thread.
+   */
+  private void enqueueSamples(PointerInputThread inputThread, MotionEvent event, int pointerIndex, int historySize, boolean withCurrent, boolean useTiltInfo, int pointerId)
+  {
+    SampleDecimator sampleDecimator = this.sampleDecimator;
+    int sampleCount = withCurrent ? historySize + 1 : historySize;
+    for (int i = 0; i < sampleCount; ++i)
+    {
+      boolean isCurrent = i == historySize;
+      float x = isCurrent ? event.getX(pointerIndex) : event.getHistoricalX(pointerIndex, i);
+      float y = isCurrent ? event.getY(pointerIndex) : event.getHistoricalY(pointerIndex, i);
+      long t = eventTimeOffset + (isCurrent ? event.getEventTime() : event.getHistoricalEventTime(i));
+      float f = isCurrent ? event.getPressure(pointerIndex) : event.getHistoricalPressure(pointerIndex, i);
+      float tilt = useTiltInfo ? getAxisValue(event, MotionEvent.AXIS_TILT, pointerIndex, i, isCurrent) : 0;
+      float orientation = useTiltInfo ? getAxisValue(event, MotionEvent.AXIS_ORIENTATION, pointerIndex, i, isCurrent) : 0;
+
+      int decimation = sampleDecimator != null ? sampleDecimator.add(pointerId, x, y, t, f, tilt, orientation) : SampleDecimator.KEEP;
+      if ((decimation & SampleDecimator.KEEP_PEAK) != 0)
+      {
+        SampleDecimator.Sample peak = sampleDecimator.getPeak();
+        inputThread.enqueue(PointerInputThread.MOVE, peak.x, peak.y, peak.t, peak.f, peak.tilt, peak.orientation, useTiltInfo, iinkPointerType, pointerId);
+      }
+      if ((decimation & SampleDecimator.KEEP) != 0)
+        inputThread.enqueue(PointerInputThread.MOVE, x, y, t, f, tilt, orientation, useTiltInfo, iinkPointerType, pointerId);
+    }
+  }
+
+  /**
+   * Fills the batch with the move samples of a motion event kept by the decimator, starting at {@code offset}.
+   * The batch must have room for {@code historySize + 2} samples after {@code offset}.
+   *
+   * @return the index following the last filled sample.
+   */
+  private int fillSamples(PointerEventBatch batch, int offset, MotionEvent event, int pointerIndex, int historySize, boolean withCurrent, boolean useTiltInfo, int pointerId)
+  {
+    SampleDecimator sampleDecimator = this.sampleDecimator;
+    int index = offset;
+    int sampleCount = withCurrent ? historySize + 1 : historySize;
+    for (int i = 0; i < sampleCount; ++i)
+    {
+      boolean isCurrent = i == historySize;
+      float x = isCurrent ? event.getX(pointerIndex) : event.getHistoricalX(pointerIndex, i);
+      float y = isCurrent ? event.getY(pointerIndex) : event.getHistoricalY(pointerIndex, i);
+      long t = eventTimeOffset + (isCurrent ? event.getEventTime() : event.getHistoricalEventTime(i));
+      float f = isCurrent ? event.getPressure(pointerIndex) : event.getHistoricalPressure(pointerIndex, i);
+      float tilt = useTiltInfo ? getAxisValue(event, MotionEvent.AXIS_TILT, pointerIndex, i, isCurrent) : 0;
+      float orientation = useTiltInfo ? getAxisValue(event, MotionEvent.AXIS_ORIENTATION, pointerIndex, i, isCurrent) : 0;
+
+      int decimation = sampleDecimator != null ? sampleDecimator.add(pointerId, x, y, t, f, tilt, orientation) : SampleDecimator.KEEP;
+      if ((decimation & SampleDecimator.KEEP_PEAK) != 0)
+      {
+        SampleDecimator.Sample peak = sampleDecimator.getPeak();
+        batch.set(index++, PointerEventType.MOVE, peak.x, peak.y, peak.t, peak.f, peak.tilt, peak.orientation, iinkPointerType, pointerId);
+      }
+      if ((decimation & SampleDecimator.KEEP) != 0)
+        batch.set(index++, PointerEventType.MOVE, x, y, t, f, tilt, orientation, iinkPointerType, pointerId);
+    }
+    return index;
+  }
+
+  private static float getAxisValue(MotionEvent event, int axis, int pointerIndex, int historyIndex, boolean isCurrent)
+  {
+    return isCurrent ? event.getAxisValue(axis, pointerIndex) : event.getHistoricalAxisValue(axis, pointerIndex, historyIndex);
+  }
+
+  private void startDecimation(MotionEvent event, int pointerIndex, int pointerId)
+  {
+    SampleDecimator sampleDecimator = this.sampleDecimator;
+    if (sampleDecimator == null)
+      return;
+    Renderer renderer = editor.getRenderer();
+    sampleDecimator.startStroke(pointerId, renderer.getDpiX(), renderer.getDpiY(), event.getX(pointerIndex), event.getY(pointerIndex),
+        eventTimeOffset + event.getEventTime(), event.getPressure(pointerIndex));
+  }
+
+  /**
+   * Provides the view with the area of the new samples of the current stroke (joined to the previous sample),
+   * so that capture repaint is limited to the newest stroke segment.
+   */
+  private void hintCaptureUpdate(MotionEvent event, int pointerIndex, int historySize)
+  {
+    if (!isCaptureHintEnabled)
+      return;
+
+    float left = lastCaptureX;
+    float top = lastCaptureY;
+    float right = lastCaptureX;
+    float bottom = lastCaptureY;
+    float maxSegmentLength = 0.0f;
+    float previousX = lastCaptureX;
+    float previousY = lastCaptureY;
+    for (int i = 0; i <= historySize; ++i)
+    {
+      float x = i < historySize ? event.getHistoricalX(pointerIndex, i) : event.getX(pointerIndex);
+      float y = i < historySize ? event.getHistoricalY(pointerIndex, i) : event.getY(pointerIndex);
+      left = Math.min(left, x);
+      top = Math.min(top, y);
+      right = Math.max(right, x);
+      bottom = Math.max(bottom, y);
+      maxSegmentLength = Math.max(maxSegmentLength, (float) Math.hypot(x - previousX, y - previousY));
+      previousX = x;
+      previousY = y;
+    }
+    lastCaptureX = previousX;
+    lastCaptureY = previousY;
+
+    // dilate by the stroke width, plus one segment to account for smoothing and prediction of the stroke end
+    Renderer renderer = editor.getRenderer();
+    float strokeWidthPx;
+    synchronized (this)
+    {
+      strokeWidthPx = captureStrokeWidth * renderer.getDpiX() / MM_PER_INCH * renderer.getViewScale();
+    }
+    float dilation = strokeWidthPx + maxSegmentLength + CAPTURE_HINT_PADDING_PX;
+    editorView.addCaptureUpdateHint((int) Math.floor(left - dilation), (int) Math.floor(top - dilation),
+        (int) Math.ceil(right + dilation), (int) Math.ceil(bottom + dilation));
+  }
+
+  private void startPrediction(MotionEvent event, int pointerIndex, PointerTool tool)
+  {
+    IMotionPredictor predictor;
+    synchronized (this)
+    {
+      predictor = motionPredictor;
+    }
+    // the predicted segment is drawn opaque, so that it only fits the pen
+    isPredicting = predictor != null && tool == PointerTool.PEN;
+    if (!isPredicting)
+      return;
+
+    predictor.reset();
+    predictionMetrics.startStroke();
+    addPredictorSample(predictor, event, pointerIndex, -1);
+  }
+
+  /**
+   * Feeds the predictor with the new samples, then displays the predicted end of the stroke.
+   */
+  private void updatePrediction(MotionEvent event, int pointerIndex, int historySize)
+  {
+    if (!isPredicting)
+      return;
+
+    IMotionPredictor predictor;
+    long horizonMs;
+    int color;
+    float widthMm;
+    synchronized (this)
+    {
+      predictor = motionPredictor;
+      horizonMs = predictionHorizonMs;
+      color = predictionColor;
+      widthMm = predictionWidth;
+    }
+    if (predictor == null)
+    {
+      endPrediction();
+      return;
+    }
+
+    for (int i = 0; i < historySize; ++i)
+      addPredictorSample(predictor, event, pointerIndex, i);
+    addPredictorSample(predictor, event, pointerIndex, -1);
+
+    float x = event.getX(pointerIndex);
+    float y = event.getY(pointerIndex);
+    if (predictor.predict(event.getEventTime() + horizonMs, predictedSample))
+    {
+      predictionMetrics.addPrediction(predictedSample.t, predictedSample.x, predictedSample.y);
+      Renderer renderer = editor.getRenderer();
+      float widthPx = widthMm * renderer.getDpiX() / MM_PER_INCH * renderer.getViewScale();
+      editorView.setPredictedSegment(x, y, predictedSample.x, predictedSample.y, widthPx, color);
+    }
+    else
+    {
+      editorView.clearPredictedSegment();
+    }
+  }
+
+  private void addPredictorSample(IMotionPredictor predictor, MotionEvent event, int pointerIndex, int historyIndex)
+  {
+    IMotionPredictor.Sample sample = predictorSample;
+    if (historyIndex < 0)
+    {
+      sample.x = event.getX(pointerIndex);
+      sample.y = event.getY(pointerIndex);
+      sample.t = event.getEventTime();
+      sample.pressure = event.getPressure(pointerIndex);
+      sample.tilt = event.getAxisValue(MotionEvent.AXIS_TILT, pointerIndex);
+      sample.orientation = event.getAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex);
+    }
+    else
+    {
+      sample.x = event.getHistoricalX(pointerIndex, historyIndex);
+      sample.y = event.getHistoricalY(pointerIndex, historyIndex);
+      sample.t = event.getHistoricalEventTime(historyIndex);
+      sample.pressure = event.getHistoricalPressure(pointerIndex, historyIndex);
+      sample.tilt = event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, pointerIndex, historyIndex);
+      sample.orientation = event.getHistoricalAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex, historyIndex);
+    }
+    predictionMetrics.addSample(sample.t, sample.x, sample.y);
+    predictor.addSample(sample);
+  }
+
+  /**
+   * Records the batch of {@code event}, once sent to the editor (or queued for it).
+   */
+  private void markLatencyInput(@NonNull MotionEvent event)
+  {
+    if (trackedLatency == null)
+      return;
+    if (inputThread != null)
+      trackedLatency.markQueued(event.getEventTime(), inputThread.getEnqueuedCount());
+    else if (pendingEventCount > 0)
+      trackedLatency.markQueued(event.getEventTime(), inputSequence + 1); // consumed by the next flush
+    else
+      trackedLatency.markInput(event.getEventTime());
+  }
+
+  /**
+   * @param event the last event of the stroke, {@code null} if the stroke was cancelled.
+   */
+  private void endLatencyTracking(@Nullable MotionEvent event)
+  {
+    if (trackedLatency != null)
+    {
+      if (event != null)
+        markLatencyInput(event);
+      trackedLatency.endStroke();
+      trackedLatency = null;
+    }
+  }
+
+  private void endPrediction()
+  {
+    if (isPredicting)
+    {
+      isPredicting = false;
+      editorView.clearPredictedSegment();
+    }
+  }
+
+  private void endCaptureHint()
+  {
+    if (isCaptureHintEnabled)
+    {
+      isCaptureHintEnabled = false;
+      editorView.clearCaptureUpdateHint();
+    }
+  }
+
+  @Override
+  public boolean onHover(View v, MotionEvent event)
+  {
+    if (event.getActionMasked() == MotionEvent.ACTION_HOVER_ENTER && event.getToolType(0) == MotionEvent.TOOL_TYPE_STYLUS)
+      warmUpCapture();
+    // not consumed, the view keeps its own hover handling
+    return false;
+  }
+
   @Override
   public boolean onTouch(View v, MotionEvent event)
   {
@@ -301,6 +867,10 @@ public boolean onTouch(View v, MotionEvent event)
     final int action = event.getAction();
     final int actionMask = action & MotionEvent.ACTION_MASK;
 
+    InputRecorder recorder = inputRecorder;
+    if (recorder != null)
+      recorder.record(event);
+
     try
     {
       if (actionMask == MotionEvent.ACTION_POINTER_DOWN || actionMask == MotionEvent.ACTION_POINTER_UP)
@@ -377,14 +947,9 @@ public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float d
   {
     if (editor.isScrollAllowed() && isScrollingEnabled)
     {
-      Point oldOffset = editor.getRenderer().getViewOffset();
-      Point newOffset = new Point(oldOffset.x + distanceX, oldOffset.y + distanceY);
-      editor.getRenderer().setViewOffset(Math.round(newOffset.x), Math.round(newOffset.y));
-      editorView.invalidate(editor.getRenderer(), EnumSet.allOf(IRenderTarget.LayerType.class));
-      if(_viewListener != null)
-      {
-        _viewListener.showScrollbars();
-      }
+      pendingScrollX += distanceX;
+      pendingScrollY += distanceY;
+      scheduleViewportUpdate();
       return true;
     }
     return false;
@@ -399,26 +964,18 @@ public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float ve
   @Override
   public boolean onScale(ScaleGestureDetector scaleGestureDetector)
   {
-    Renderer renderer = editorView.getRenderer();
-
     // Store the current focus of the scaleGestureDetector
     float currentScalingFocusX = scaleGestureDetector.getFocusX();
     float currentScalingFocusY = scaleGestureDetector.getFocusY();
     float currentSpan = scaleGestureDetector.getCurrentSpan();
 
-    // Measure the delta of the currentFocus to the previous
-    float distanceX = previousScalingFocusX - currentScalingFocusX;
-    float distanceY = previousScalingFocusY - currentScalingFocusY;
+    // Measure the delta of the currentFocus to the previous, to translate the render with the scaling focus
+    pendingScrollX += previousScalingFocusX - currentScalingFocusX;
+    pendingScrollY += previousScalingFocusY - currentScalingFocusY;
 
     previousScalingFocusX = currentScalingFocusX;
     previousScalingFocusY = currentScalingFocusY;
 
-    Point oldOffset = renderer.getViewOffset();
-    Point newOffset = new Point(oldOffset.x + distanceX, oldOffset.y + distanceY);
-
-    // Apply the translation of the scaling focus to the render
-    renderer.setViewOffset(Math.round(newOffset.x), Math.round(newOffset.y));
-
     float deltaSpan = getPreviousScalingSpan / currentSpan;
     // Apply a ratio in order to avoid the scaling to move too fast
     deltaSpan = 1.0f + ((1.0f - deltaSpan) / SCALING_SENSIBILITY);
@@ -426,18 +983,63 @@ public boolean onScale(ScaleGestureDetector scaleGestureDetector)
     // Do not move if the scaling is too small
     if (deltaSpan > (1 + SCALING_THRESHOLD) || deltaSpan < (1 - SCALING_THRESHOLD))
     {
-      renderer.zoomAt(new Point(currentScalingFocusX, currentScalingFocusY), deltaSpan);
+      pendingZoomFactor *= deltaSpan;
+      pendingZoomFocusX = currentScalingFocusX;
+      pendingZoomFocusY = currentScalingFocusY;
     }
 
     // Store the span for next time
     getPreviousScalingSpan = currentSpan;
-    editorView.invalidate(renderer, EnumSet.allOf(IRenderTarget.LayerType.class));
+    isPendingScale = true;
+    scheduleViewportUpdate();
+    return true;
+  }
 
-    if(_viewListener != null)
+  private void scheduleViewportUpdate()
+  {
+    if (!isViewportUpdateScheduled)
+    {
+      isViewportUpdateScheduled = true;
+      Choreographer.getInstance().postFrameCallback(viewportCallback);
+    }
+  }
+
+  /**
+   * Applies the viewport changes of the gesture events received since the previous frame as a single change.
+   */
+  private void applyViewportUpdate()
+  {
+    isViewportUpdateScheduled = false;
+    float scrollX = pendingScrollX;
+    float scrollY = pendingScrollY;
+    float zoomFactor = pendingZoomFactor;
+    boolean isScale = isPendingScale;
+    pendingScrollX = 0.0f;
+    pendingScrollY = 0.0f;
+    pendingZoomFactor = 1.0f;
+    isPendingScale = false;
+    // the editor may have been closed since the gesture events were received
+    if (editor.isClosed())
+      return;
+
+    Renderer renderer = editor.getRenderer();
+    if (scrollX != 0.0f || scrollY != 0.0f)
+    {
+      Point oldOffset = renderer.getViewOffset();
+      renderer.setViewOffset(Math.round(oldOffset.x + scrollX), Math.round(oldOffset.y + scrollY));
+    }
+    if (zoomFactor != 1.0f)
+      renderer.zoomAt(new Point(pendingZoomFocusX, pendingZoomFocusY), zoomFactor);
+
+    if (isScale)
+      editorView.invalidate(renderer, EnumSet.allOf(IRenderTarget.LayerType.class));
+    else
+      editorView.invalidateViewport(renderer);
+
+    if (_viewListener != null)
     {
       _viewListener.showScrollbars();
     }
-    return true;
   }
 
   @Override
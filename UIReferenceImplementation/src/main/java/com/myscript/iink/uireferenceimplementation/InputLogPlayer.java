@@ -0,0 +1,157 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.PointerType;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Replays the records of an input log (see {@link InputRecorder}) into a {@link IPointerEventConsumer}, as fast as
+ * possible and without the Android framework: logs can be replayed on a plain JVM, e.g. to benchmark or test a
+ * consumer.
+ * <p>
+ * Only the first pointer of each stroke is replayed, as {@link InputController} does when writing: the other
+ * pointers of multi-finger gestures are ignored. Historical samples are replayed as moves.
+ */
+public final class InputLogPlayer
+{
+  // MotionEvent constants, not available on a plain JVM
+  static final int ACTION_DOWN = 0;
+  static final int ACTION_UP = 1;
+  static final int ACTION_MOVE = 2;
+  static final int ACTION_CANCEL = 3;
+  static final int TOOL_TYPE_FINGER = 1;
+  static final int TOOL_TYPE_STYLUS = 2;
+  static final int TOOL_TYPE_MOUSE = 3;
+  static final int TOOL_TYPE_ERASER = 4;
+
+  @NonNull
+  private final IPointerEventConsumer consumer;
+  // the replayed pointer, -1 between strokes
+  private int pointerId = -1;
+  @Nullable
+  private PointerType pointerType = null;
+
+  public InputLogPlayer(@NonNull IPointerEventConsumer consumer)
+  {
+    this.consumer = consumer;
+  }
+
+  /**
+   * Replays all the records of a log.
+   *
+   * @return the number of replayed records.
+   */
+  public int play(@NonNull InputLogReader reader) throws IOException
+  {
+    int count = 0;
+    InputLogReader.Record record;
+    while ((record = reader.read()) != null)
+    {
+      play(record);
+      ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Replays a record, following the records of the same log.
+   */
+  public void play(@NonNull InputLogReader.Record record)
+  {
+    switch (record.actionMasked)
+    {
+      case ACTION_DOWN:
+      {
+        int pointerIndex = record.actionIndex;
+        PointerType type = toPointerType(record.toolTypes[pointerIndex]);
+        if (type == null)
+          return;
+        if (pointerId >= 0)
+          consumer.pointerCancel(pointerId);
+        pointerId = record.pointerIds[pointerIndex];
+        pointerType = type;
+        int last = record.getSampleCount() - 1;
+        int i = last * record.pointerCount + pointerIndex;
+        consumer.pointerDown(record.xs[i], record.ys[i], record.times[last], record.pressures[i], record.tilts[i],
+            record.orientations[i], type, pointerId);
+        break;
+      }
+      case ACTION_MOVE:
+      {
+        int pointerIndex = indexOf(record, pointerId);
+        if (pointerIndex < 0)
+          return;
+        playMoves(record, pointerIndex, record.getSampleCount());
+        break;
+      }
+      case ACTION_UP:
+      {
+        int pointerIndex = indexOf(record, pointerId);
+        if (pointerIndex < 0)
+          return;
+        int last = record.getSampleCount() - 1;
+        playMoves(record, pointerIndex, last);
+        int i = last * record.pointerCount + pointerIndex;
+        consumer.pointerUp(record.xs[i], record.ys[i], record.times[last], record.pressures[i], record.tilts[i],
+            record.orientations[i], pointerType, pointerId);
+        pointerId = -1;
+        break;
+      }
+      case ACTION_CANCEL:
+      {
+        if (pointerId < 0)
+          return;
+        consumer.pointerCancel(pointerId);
+        pointerId = -1;
+        break;
+      }
+      default:
+        // secondary pointers are not replayed
+        break;
+    }
+  }
+
+  private void playMoves(@NonNull InputLogReader.Record record, int pointerIndex, int sampleCount)
+  {
+    for (int s = 0; s < sampleCount; ++s)
+    {
+      int i = s * record.pointerCount + pointerIndex;
+      consumer.pointerMove(record.xs[i], record.ys[i], record.times[s], record.pressures[i], record.tilts[i],
+          record.orientations[i], pointerType, pointerId);
+    }
+  }
+
+  private static int indexOf(@NonNull InputLogReader.Record record, int pointerId)
+  {
+    if (pointerId < 0)
+      return -1;
+    for (int p = 0; p < record.pointerCount; ++p)
+    {
+      if (record.pointerIds[p] == pointerId)
+        return p;
+    }
+    return -1;
+  }
+
+  @Nullable
+  private static PointerType toPointerType(int toolType)
+  {
+    switch (toolType)
+    {
+      case TOOL_TYPE_STYLUS:
+        return PointerType.PEN;
+      case TOOL_TYPE_ERASER:
+        return PointerType.ERASER;
+      case TOOL_TYPE_FINGER:
+      case TOOL_TYPE_MOUSE:
+        return PointerType.TOUCH;
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Reads the logs written by {@link InputRecorder}.
+ * <p>
+ * This class does not depend on the Android framework, so that logs can also be analyzed, or replayed into any
+ * consumer with {@link InputLogPlayer}, on a plain JVM.
+ */
+public final class InputLogReader implements Closeable
+{
+  /**
+   * A recorded motion event. Samples are indexed from the oldest historical sample ({@code 0}) to the current
+   * sample ({@code getSampleCount() - 1}), times are in ms.
+   */
+  public static final class Record
+  {
+    public int actionMasked;
+    public int actionIndex;
+    public int source;
+    public long downTime;
+    public int pointerCount;
+    public int[] pointerIds;
+    public int[] toolTypes;
+    public long[] times;
+    // [sample * pointerCount + pointer]
+    public float[] xs;
+    public float[] ys;
+    public float[] pressures;
+    public float[] tilts;
+    public float[] orientations;
+
+    public int getSampleCount()
+    {
+      return times.length;
+    }
+
+    public long getEventTime()
+    {
+      return times[times.length - 1];
+    }
+  }
+
+  @NonNull
+  private final DataInputStream in;
+
+  /**
+   * @throws IOException if the stream is not an input log of a supported version.
+   */
+  public InputLogReader(@NonNull InputStream in) throws IOException
+  {
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    if (this.in.readInt() != InputRecorder.MAGIC)
+      throw new IOException("Not an input log");
+    int version = this.in.readShort();
+    if (version != InputRecorder.VERSION)
+      throw new IOException("Unsupported input log version " + version);
+  }
+
+  /**
+   * @return the next record, {@code null} at the end of the log.
+   */
+  @Nullable
+  public Record read() throws IOException
+  {
+    Record record = new Record();
+    try
+    {
+      record.actionMasked = in.readUnsignedByte();
+    }
+    catch (EOFException e)
+    {
+      return null;
+    }
+    record.actionIndex = in.readUnsignedByte();
+    record.source = in.readInt();
+    record.downTime = in.readLong();
+    int pointerCount = in.readUnsignedByte();
+    int sampleCount = in.readUnsignedShort() + 1;
+    record.pointerCount = pointerCount;
+    record.pointerIds = new int[pointerCount];
+    record.toolTypes = new int[pointerCount];
+    for (int p = 0; p < pointerCount; ++p)
+    {
+      record.pointerIds[p] = in.readUnsignedByte();
+      record.toolTypes[p] = in.readUnsignedByte();
+    }
+    record.times = new long[sampleCount];
+    record.xs = new float[sampleCount * pointerCount];
+    record.ys = new float[sampleCount * pointerCount];
+    record.pressures = new float[sampleCount * pointerCount];
+    record.tilts = new float[sampleCount * pointerCount];
+    record.orientations = new float[sampleCount * pointerCount];
+    for (int s = 0; s < sampleCount; ++s)
+    {
+      record.times[s] = record.downTime + in.readInt();
+      for (int p = 0; p < pointerCount; ++p)
+      {
+        int i = s * pointerCount + p;
+        record.xs[i] = in.readFloat();
+        record.ys[i] = in.readFloat();
+        record.pressures[i] = in.readFloat();
+        record.tilts[i] = in.readFloat();
+        record.orientations[i] = in.readFloat();
+      }
+    }
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    in.close();
+  }
+}
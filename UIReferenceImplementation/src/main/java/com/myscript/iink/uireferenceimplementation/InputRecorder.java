@@ -0,0 +1,134 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.util.Log;
+import android.view.MotionEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Records the motion events received by an {@link InputController} into a compact binary log, which can be read
+ * back with {@link InputLogReader} and replayed with {@link InputReplayer}.
+ * <p>
+ * Each record holds the action, the pointers (id, tool type), and for each sample (historical ones, then the
+ * current one) its time and the position, pressure, tilt and orientation of each pointer.
+ */
+public final class InputRecorder implements Closeable
+{
+  static final int MAGIC = 0x494E4B52; // "INKR"
+  static final int VERSION = 1;
+
+  private static final String TAG = "InputRecorder";
+
+  @NonNull
+  private final DataOutputStream out;
+  private boolean failed = false;
+
+  /**
+   * @param out the stream the log is written to, closed with this recorder.
+   */
+  public InputRecorder(@NonNull OutputStream out) throws IOException
+  {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.out.writeInt(MAGIC);
+    this.out.writeShort(VERSION);
+  }
+
+  /**
+   * Appends a motion event to the log. Recording stops at the first write error.
+   */
+  public synchronized void record(@NonNull MotionEvent event)
+  {
+    if (failed)
+      return;
+
+    try
+    {
+      final int pointerCount = event.getPointerCount();
+      final int historySize = event.getHistorySize();
+      out.writeByte(event.getActionMasked());
+      out.writeByte(event.getActionIndex());
+      out.writeInt(event.getSource());
+      out.writeLong(event.getDownTime());
+      out.writeByte(pointerCount);
+      out.writeShort(historySize);
+      for (int p = 0; p < pointerCount; ++p)
+      {
+        out.writeByte(event.getPointerId(p));
+        out.writeByte(event.getToolType(p));
+      }
+      for (int h = 0; h < historySize; ++h)
+      {
+        out.writeInt((int) (event.getHistoricalEventTime(h) - event.getDownTime()));
+        for (int p = 0; p < pointerCount; ++p)
+        {
+          out.writeFloat(event.getHistoricalX(p, h));
+          out.writeFloat(event.getHistoricalY(p, h));
+          out.writeFloat(event.getHistoricalPressure(p, h));
+          out.writeFloat(event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, p, h));
+          out.writeFloat(event.getHistoricalOrientation(p, h));
+        }
+      }
+      out.writeInt((int) (event.getEventTime() - event.getDownTime()));
+      for (int p = 0; p < pointerCount; ++p)
+      {
+        out.writeFloat(event.getX(p));
+        out.writeFloat(event.getY(p));
+        out.writeFloat(event.getPressure(p));
+        out.writeFloat(event.getAxisValue(MotionEvent.AXIS_TILT, p));
+        out.writeFloat(event.getOrientation(p));
+      }
+    }
+    catch (IOException e)
+    {
+      Log.e(TAG, "input recording stopped", e);
+      failed = true;
+    }
+  }
+
+  /**
+   * Appends a record read from another log, e.g. to edit logs on a plain JVM.
+   */
+  public synchronized void record(@NonNull InputLogReader.Record record) throws IOException
+  {
+    final int pointerCount = record.pointerCount;
+    final int sampleCount = record.getSampleCount();
+    out.writeByte(record.actionMasked);
+    out.writeByte(record.actionIndex);
+    out.writeInt(record.source);
+    out.writeLong(record.downTime);
+    out.writeByte(pointerCount);
+    out.writeShort(sampleCount - 1);
+    for (int p = 0; p < pointerCount; ++p)
+    {
+      out.writeByte(record.pointerIds[p]);
+      out.writeByte(record.toolTypes[p]);
+    }
+    for (int s = 0; s < sampleCount; ++s)
+    {
+      out.writeInt((int) (record.times[s] - record.downTime));
+      for (int p = 0; p < pointerCount; ++p)
+      {
+        int i = s * pointerCount + p;
+        out.writeFloat(record.xs[i]);
+        out.writeFloat(record.ys[i]);
+        out.writeFloat(record.pressures[i]);
+        out.writeFloat(record.tilts[i]);
+        out.writeFloat(record.orientations[i]);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    out.close();
+  }
+}
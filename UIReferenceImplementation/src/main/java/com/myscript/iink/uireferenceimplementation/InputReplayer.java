@@ -0,0 +1,175 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Replays an input log (see {@link InputRecorder}) into a touch listener, typically the {@link InputController}
+ * of an {@link EditorView}, at the original speed or accelerated.
+ * <p>
+ * Event times are shifted (and scaled with the speed) to the replay time, so that time-based processing (gestures,
+ * prediction, latency) behaves as during recording. Must be used from the UI thread.
+ */
+public final class InputReplayer
+{
+  @NonNull
+  private final View view;
+  @NonNull
+  private final View.OnTouchListener listener;
+  @NonNull
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  @NonNull
+  private List<InputLogReader.Record> records = new ArrayList<>();
+  private int nextRecord = 0;
+  private float speed = 1.0f;
+  private long startTime;
+  private long firstRecordTime;
+  @Nullable
+  private Runnable onDone = null;
+  private final Runnable dispatchRunnable = this::dispatchNext;
+
+  public InputReplayer(@NonNull View view, @NonNull View.OnTouchListener listener)
+  {
+    this.view = view;
+    this.listener = listener;
+  }
+
+  /**
+   * Starts replaying the log, stopping the ongoing replay if any.
+   *
+   * @param in the log, read entirely before the replay starts.
+   * @param speed the replay speed factor (1 for the original speed), 0 to replay as fast as possible.
+   * @param onDone called when all the events were replayed.
+   */
+  public void start(@NonNull InputStream in, float speed, @Nullable Runnable onDone) throws IOException
+  {
+    stop();
+
+    List<InputLogReader.Record> records = new ArrayList<>();
+    try (InputLogReader reader = new InputLogReader(in))
+    {
+      InputLogReader.Record record;
+      while ((record = reader.read()) != null)
+        records.add(record);
+    }
+
+    this.records = records;
+    this.speed = speed;
+    this.onDone = onDone;
+    nextRecord = 0;
+    if (records.isEmpty())
+    {
+      finish();
+      return;
+    }
+    startTime = SystemClock.uptimeMillis();
+    firstRecordTime = records.get(0).times[0];
+    scheduleNext();
+  }
+
+  public void stop()
+  {
+    handler.removeCallbacks(dispatchRunnable);
+    records = new ArrayList<>();
+    nextRecord = 0;
+    onDone = null;
+  }
+
+  public boolean isReplaying()
+  {
+    return nextRecord < records.size();
+  }
+
+  private void scheduleNext()
+  {
+    if (speed <= 0)
+      handler.post(dispatchRunnable);
+    else
+      handler.postAtTime(dispatchRunnable, replayTime(records.get(nextRecord).getEventTime()));
+  }
+
+  private void dispatchNext()
+  {
+    InputLogReader.Record record = records.get(nextRecord++);
+    MotionEvent event = toMotionEvent(record);
+    try
+    {
+      listener.onTouch(view, event);
+    }
+    finally
+    {
+      event.recycle();
+    }
+
+    if (nextRecord < records.size())
+      scheduleNext();
+    else
+      finish();
+  }
+
+  private void finish()
+  {
+    Runnable onDone = this.onDone;
+    stop();
+    if (onDone != null)
+      onDone.run();
+  }
+
+  private long replayTime(long recordTime)
+  {
+    if (speed <= 0)
+      return SystemClock.uptimeMillis();
+    return startTime + (long) ((recordTime - firstRecordTime) / speed);
+  }
+
+  @NonNull
+  private MotionEvent toMotionEvent(@NonNull InputLogReader.Record record)
+  {
+    int pointerCount = record.pointerCount;
+    MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+    MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+    for (int p = 0; p < pointerCount; ++p)
+    {
+      properties[p] = new MotionEvent.PointerProperties();
+      properties[p].id = record.pointerIds[p];
+      properties[p].toolType = record.toolTypes[p];
+      coords[p] = new MotionEvent.PointerCoords();
+    }
+
+    int action = record.actionMasked | (record.actionIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+    long downTime = replayTime(record.downTime);
+    MotionEvent event = null;
+    // the oldest sample creates the event, the following ones are added as batches (the last one being current)
+    for (int s = 0, sampleCount = record.getSampleCount(); s < sampleCount; ++s)
+    {
+      for (int p = 0; p < pointerCount; ++p)
+      {
+        int i = s * pointerCount + p;
+        coords[p].x = record.xs[i];
+        coords[p].y = record.ys[i];
+        coords[p].pressure = record.pressures[i];
+        coords[p].orientation = record.orientations[i];
+        coords[p].setAxisValue(MotionEvent.AXIS_TILT, record.tilts[i]);
+      }
+      long time = Math.max(downTime, replayTime(record.times[s]));
+      if (event == null)
+        event = MotionEvent.obtain(downTime, time, action, pointerCount, properties, coords, 0, 0, 1.0f, 1.0f, 0, 0, record.source, 0);
+      else
+        event.addBatch(time, coords, 0);
+    }
+    return event;
+  }
+}
@@ -0,0 +1,315 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.ContentBlock;
+import com.myscript.iink.ContentPart;
+import com.myscript.iink.Editor;
+import com.myscript.iink.EditorError;
+import com.myscript.iink.IEditorListener;
+import com.myscript.iink.MimeType;
+import com.myscript.iink.ParameterSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Caches the JIIX export of content blocks, so that an unchanged block is exported only once whoever asks for it.
+ * <p>
+ * Entries are keyed by block id and export parameters, so that a single instance is shared by all the consumers of
+ * an editor. Parameters are compared by identity: each consumer keeps the {@link ParameterSet} it exports with.
+ * Entries are invalidated by the block ids reported by {@link IEditorListener#contentChanged}, along with their
+ * children and their containers (whose export includes them), the whole cache is cleared when the part changes.
+ * Only the most recently used entries are kept, and entries of removed blocks are dropped. Concurrent requests for
+ * the same entry wait for a single export. The words of the export are parsed on demand and kept alongside the raw
+ * string.
+ * <p>
+ * The cache registers itself as an editor listener when created: listeners registered afterwards get the changes
+ * once the cache is invalidated. Requests may be made from any thread, but block while the block is being exported.
+ */
+public final class JiixCache implements IEditorListener
+{
+  // a few export parameters per block
+  private static final int MAX_ENTRIES = 64;
+
+  private static final class Key
+  {
+    @NonNull
+    private final String blockId;
+    @Nullable
+    private final ParameterSet exportParams;
+
+    private Key(@NonNull String blockId, @Nullable ParameterSet exportParams)
+    {
+      this.blockId = blockId;
+      this.exportParams = exportParams;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return blockId.equals(other.blockId) && exportParams == other.exportParams;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * blockId.hashCode() + System.identityHashCode(exportParams);
+    }
+  }
+
+  private static final class Entry
+  {
+    // incremented on each change of the block, lock free so that the editor is never blocked by an export
+    private final AtomicLong version = new AtomicLong(0);
+    @Nullable
+    private Result result;
+  }
+
+  private static final class Result
+  {
+    private final long version;
+    @NonNull
+    private final String jiix;
+    @Nullable
+    private List<JiixDefinitions.Word> words;
+
+    private Result(long version, @NonNull String jiix)
+    {
+      this.version = version;
+      this.jiix = jiix;
+    }
+  }
+
+  @NonNull
+  private final Editor editor;
+  // least recently used first, guarded by its own lock
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(MAX_ENTRIES, 0.75f, true)
+  {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+    {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  // reuses its parsing buffers, one parse at a time
+  private final JiixWordReader wordReader = new JiixWordReader();
+
+  /**
+   * Creates a cache and registers it as a listener of the editor, until {@link #close()}.
+   *
+   * @param editor the editor of the blocks.
+   */
+  public JiixCache(@NonNull Editor editor)
+  {
+    this.editor = editor;
+    editor.addListener(this);
+  }
+
+  /**
+   * Unregisters the cache from the editor and drops all entries.
+   */
+  public void close()
+  {
+    if (!editor.isClosed())
+      editor.removeListener(this);
+    synchronized (entries)
+    {
+      entries.clear();
+    }
+  }
+
+  /**
+   * @param blockId the id of the block.
+   * @return the JIIX export of the block with the editor configuration, {@code null} if the block does not exist.
+   * @throws IllegalStateException as {@code Editor.export_}, for instance while the engine is processing the block.
+   */
+  @Nullable
+  public String getJiix(@NonNull String blockId)
+  {
+    return getJiix(blockId, null);
+  }
+
+  /**
+   * @param blockId      the id of the block.
+   * @param exportParams the parameters of the export, {@code null} for the editor configuration.
+   * @return the JIIX export of the block, {@code null} if the block does not exist.
+   * @throws IllegalStateException as {@code Editor.export_}, for instance while the engine is processing the block.
+   */
+  @Nullable
+  public String getJiix(@NonNull String blockId, @Nullable ParameterSet exportParams)
+  {
+    Key key = new Key(blockId, exportParams);
+    Entry entry = getEntry(key);
+    synchronized (entry)
+    {
+      Result result = getResult(key, entry);
+      return result != null ? result.jiix : null;
+    }
+  }
+
+  /**
+   * @param blockId      the id of the block.
+   * @param exportParams the parameters of the export, {@code null} for the editor configuration.
+   * @return the words of the JIIX export of the block (unmodifiable), {@code null} if the block does not exist.
+   * @throws IOException if the export cannot be parsed.
+   */
+  @Nullable
+  public List<JiixDefinitions.Word> getWords(@NonNull String blockId, @Nullable ParameterSet exportParams) throws IOException
+  {
+    Key key = new Key(blockId, exportParams);
+    Entry entry = getEntry(key);
+    synchronized (entry)
+    {
+      Result result = getResult(key, entry);
+      if (result == null)
+        return null;
+      if (result.words == null)
+      {
+        List<JiixDefinitions.Word> words = new ArrayList<>();
+        synchronized (wordReader)
+        {
+          wordReader.readWords(result.jiix, words);
+        }
+        result.words = Collections.unmodifiableList(words);
+      }
+      return result.words;
+    }
+  }
+
+  @NonNull
+  private Entry getEntry(@NonNull Key key)
+  {
+    synchronized (entries)
+    {
+      Entry entry = entries.get(key);
+      if (entry == null)
+      {
+        entry = new Entry();
+        entries.put(key, entry);
+      }
+      return entry;
+    }
+  }
+
+  // must hold the entry lock
+  @Nullable
+  private Result getResult(@NonNull Key key, @NonNull Entry entry)
+  {
+    long version = entry.version.get();
+    Result result = entry.result;
+    if (result != null && result.version == version)
+      return result;
+
+    String jiix;
+    try (ContentBlock block = editor.getBlockById(key.blockId))
+    {
+      if (block == null || !block.isValid())
+      {
+        entry.result = null;
+        synchronized (entries)
+        {
+          if (entries.get(key) == entry)
+            entries.remove(key);
+        }
+        return null;
+      }
+      jiix = editor.export_(block, MimeType.JIIX, key.exportParams);
+    }
+    // a change during the export makes this result stale for the next requests
+    result = new Result(version, jiix);
+    entry.result = result;
+    return result;
+  }
+
+  /**
+   * Invalidates the given blocks, their children and their containers.
+   */
+  public void invalidate(@NonNull String[] blockIds)
+  {
+    synchronized (entries)
+    {
+      // iterating does not change the access order, the number of entries is bounded
+      for (Map.Entry<Key, Entry> entry : entries.entrySet())
+      {
+        String id = entry.getKey().blockId;
+        for (String blockId : blockIds)
+        {
+          if (isSameOrNested(id, blockId) || isSameOrNested(blockId, id))
+          {
+            entry.getValue().version.incrementAndGet();
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  // children ids are prefixed by their container id
+  private static boolean isSameOrNested(@NonNull String id, @NonNull String containerId)
+  {
+    if (!id.startsWith(containerId))
+      return false;
+    return id.length() == containerId.length() || id.charAt(containerId.length()) == '/';
+  }
+
+  /**
+   * Invalidates all blocks.
+   */
+  public void clear()
+  {
+    synchronized (entries)
+    {
+      for (Entry entry : entries.values())
+        entry.version.incrementAndGet();
+      entries.clear();
+    }
+  }
+
+  @Override
+  public void partChanging(@NonNull Editor editor, @Nullable ContentPart oldPart, @Nullable ContentPart newPart)
+  {
+    clear();
+  }
+
+  @Override
+  public void partChanged(@NonNull Editor editor)
+  {
+    clear();
+  }
+
+  @Override
+  public void contentChanged(@NonNull Editor editor, @NonNull String[] blockIds)
+  {
+    invalidate(blockIds);
+  }
+
+  @Override
+  public void onError(@NonNull Editor editor, @NonNull String blockId, @NonNull EditorError error, @NonNull String message)
+  {
+    // no-op
+  }
+
+  @Override
+  public void selectionChanged(@NonNull Editor editor)
+  {
+    // no-op
+  }
+
+  @Override
+  public void activeBlockChanged(@NonNull Editor editor, @NonNull String blockId)
+  {
+    // no-op
+  }
+}
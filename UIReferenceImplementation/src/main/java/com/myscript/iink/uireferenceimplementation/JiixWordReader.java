@@ -0,0 +1,150 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Streaming extraction of the JIIX fields used by the smart guide: the words of a text block (label, reflow label
+ * and candidates) and the padding of the block attributes.
+ * <p>
+ * Other fields (chars, strokes, bounding boxes...) are skipped without being materialized. A reader instance
+ * reuses its buffers from one document to the next, it must not be used by several threads at once.
+ */
+final class JiixWordReader
+{
+  private static final String PADDING_LEFT_FIELDNAME = "left";
+  private static final String PADDING_RIGHT_FIELDNAME = "right";
+  private static final String CANDIDATES_FIELDNAME = "candidates";
+  private static final String REFLOW_LABEL_FIELDNAME = "reflow-label";
+
+  private final List<String> candidates = new ArrayList<>();
+
+  /**
+   * Reads the words of a JIIX text block export.
+   *
+   * @param jiix  the JIIX document.
+   * @param words the list to add the words to.
+   * @throws IOException if the document is malformed.
+   */
+  void readWords(@NonNull String jiix, @NonNull List<JiixDefinitions.Word> words) throws IOException
+  {
+    try (JsonReader reader = new JsonReader(new StringReader(jiix)))
+    {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        return;
+      reader.beginObject();
+      while (reader.hasNext())
+      {
+        if (JiixDefinitions.Result.WORDS_FIELDNAME.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY)
+          readWordArray(reader, words);
+        else
+          reader.skipValue();
+      }
+      reader.endObject();
+    }
+    catch (IllegalStateException | NumberFormatException e)
+    {
+      throw new IOException(e);
+    }
+  }
+
+  private void readWordArray(@NonNull JsonReader reader, @NonNull List<JiixDefinitions.Word> words) throws IOException
+  {
+    reader.beginArray();
+    while (reader.hasNext())
+    {
+      if (reader.peek() == JsonToken.BEGIN_OBJECT)
+        words.add(readWord(reader));
+      else
+        reader.skipValue();
+    }
+    reader.endArray();
+  }
+
+  @NonNull
+  private JiixDefinitions.Word readWord(@NonNull JsonReader reader) throws IOException
+  {
+    JiixDefinitions.Word word = new JiixDefinitions.Word();
+    reader.beginObject();
+    while (reader.hasNext())
+    {
+      String name = reader.nextName();
+      if (JiixDefinitions.Word.LABEL_FIELDNAME.equals(name))
+        word.label = nextString(reader);
+      else if (REFLOW_LABEL_FIELDNAME.equals(name))
+        word.reflowlabel = nextString(reader);
+      else if (CANDIDATES_FIELDNAME.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY)
+        word.candidates = readCandidates(reader);
+      else
+        reader.skipValue();
+    }
+    reader.endObject();
+    return word;
+  }
+
+  @NonNull
+  private String[] readCandidates(@NonNull JsonReader reader) throws IOException
+  {
+    candidates.clear();
+    reader.beginArray();
+    while (reader.hasNext())
+    {
+      String candidate = nextString(reader);
+      if (candidate != null)
+        candidates.add(candidate);
+    }
+    reader.endArray();
+    return candidates.toArray(new String[0]);
+  }
+
+  @Nullable
+  private static String nextString(@NonNull JsonReader reader) throws IOException
+  {
+    if (reader.peek() == JsonToken.STRING)
+      return reader.nextString();
+    reader.skipValue();
+    return null;
+  }
+
+  /**
+   * Reads the padding of block attributes ({@code ContentBlock.getAttributes()}).
+   *
+   * @param attributes the attributes, as JSON.
+   * @param padding    the padding to fill, fields are left untouched when missing.
+   * @throws IOException if the attributes are malformed.
+   */
+  static void readPadding(@NonNull String attributes, @NonNull JiixDefinitions.Padding padding) throws IOException
+  {
+    try (JsonReader reader = new JsonReader(new StringReader(attributes)))
+    {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        return;
+      reader.beginObject();
+      while (reader.hasNext())
+      {
+        String name = reader.nextName();
+        if (PADDING_LEFT_FIELDNAME.equals(name) && reader.peek() == JsonToken.NUMBER)
+          padding.left = (float) reader.nextDouble();
+        else if (PADDING_RIGHT_FIELDNAME.equals(name) && reader.peek() == JsonToken.NUMBER)
+          padding.right = (float) reader.nextDouble();
+        else
+          reader.skipValue();
+      }
+      reader.endObject();
+    }
+    catch (IllegalStateException | NumberFormatException e)
+    {
+      throw new IOException(e);
+    }
+  }
+}
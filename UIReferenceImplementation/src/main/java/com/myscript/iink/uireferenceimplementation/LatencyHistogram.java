@@ -0,0 +1,84 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Histogram of latencies with a 1 ms resolution, latencies above {@link #MAX_LATENCY_MS} are counted in the
+ * last bucket.
+ */
+public final class LatencyHistogram
+{
+  public static final int MAX_LATENCY_MS = 500;
+
+  private final int[] buckets = new int[MAX_LATENCY_MS + 1];
+  private int count = 0;
+  private long maxLatencyMs = 0;
+
+  public synchronized void add(long latencyMs)
+  {
+    int bucket = (int) Math.max(0, Math.min(MAX_LATENCY_MS, latencyMs));
+    ++buckets[bucket];
+    ++count;
+    maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+  }
+
+  public synchronized void add(@NonNull LatencyHistogram other)
+  {
+    synchronized (other)
+    {
+      for (int i = 0; i < buckets.length; ++i)
+        buckets[i] += other.buckets[i];
+      count += other.count;
+      maxLatencyMs = Math.max(maxLatencyMs, other.maxLatencyMs);
+    }
+  }
+
+  public synchronized int getCount()
+  {
+    return count;
+  }
+
+  public synchronized long getMax()
+  {
+    return maxLatencyMs;
+  }
+
+  /**
+   * @param percentile the percentile, in ]0, 100].
+   * @return the latency (in ms) below or at which the given percentage of the samples are, 0 if empty.
+   */
+  public synchronized long getPercentile(float percentile)
+  {
+    if (count == 0)
+      return 0;
+    long rank = (long) Math.ceil(percentile / 100 * count);
+    long cumulated = 0;
+    for (int i = 0; i < buckets.length; ++i)
+    {
+      cumulated += buckets[i];
+      if (cumulated >= rank)
+        return i;
+    }
+    return MAX_LATENCY_MS;
+  }
+
+  public synchronized void reset()
+  {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    maxLatencyMs = 0;
+  }
+
+  @NonNull
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(Locale.US, "count: %d, p50: %dms, p95: %dms, p99: %dms, max: %dms",
+        count, getPercentile(50), getPercentile(95), getPercentile(99), maxLatencyMs);
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Measures the pen-to-pixel latency: the time between the event time of each input batch (motion event) and the
+ * commit of the first frame drawn after the editor consumed it (or the draw itself before Android 10).
+ * <p>
+ * Batches queued for the editor (e.g. to the input thread) carry a sequence number, they are drawn once the
+ * consumer reports that sequence with {@link #markConsumed(long)}.
+ * <p>
+ * Latencies are gathered per stroke, reported to the listener once the last batch of the stroke is displayed,
+ * and accumulated into a session histogram. All times are in the {@link SystemClock#uptimeMillis()} time base.
+ */
+public final class LatencyTracker
+{
+  public interface Listener
+  {
+    /**
+     * Called when the last batch of a stroke was displayed.
+     *
+     * @param strokeLatencies the latencies of the stroke batches, only valid during the call.
+     */
+    void onStrokeLatency(@NonNull LatencyHistogram strokeLatencies);
+  }
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // batches queued but not consumed by the editor yet, ordered by sequence
+  private long[] queuedTimes = new long[INITIAL_CAPACITY];
+  private long[] queuedSequences = new long[INITIAL_CAPACITY];
+  private int queuedCount = 0;
+  private long consumedSequence = 0;
+  // batches consumed but not drawn yet, and batches drawn but not committed yet
+  private long[] pendingTimes = new long[INITIAL_CAPACITY];
+  private int pendingCount = 0;
+  private long[] drawnTimes = new long[INITIAL_CAPACITY];
+  private int drawnCount = 0;
+  private boolean isStrokeEnding = false;
+
+  @NonNull
+  private final LatencyHistogram strokeHistogram = new LatencyHistogram();
+  @NonNull
+  private final LatencyHistogram sessionHistogram = new LatencyHistogram();
+  @Nullable
+  private Listener listener = null;
+
+  public synchronized void setListener(@Nullable Listener listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * @return the latencies of all the strokes since the last {@link #reset()}.
+   */
+  @NonNull
+  public LatencyHistogram getSessionHistogram()
+  {
+    return sessionHistogram;
+  }
+
+  public synchronized void reset()
+  {
+    queuedCount = 0;
+    pendingCount = 0;
+    drawnCount = 0;
+    isStrokeEnding = false;
+    strokeHistogram.reset();
+    sessionHistogram.reset();
+  }
+
+  /**
+   * Records an input batch consumed by the editor.
+   *
+   * @param eventTime the event time of the batch, typically {@code MotionEvent.getEventTime()}.
+   */
+  synchronized void markInput(long eventTime)
+  {
+    if (pendingCount == pendingTimes.length)
+      pendingTimes = grow(pendingTimes);
+    pendingTimes[pendingCount++] = eventTime;
+  }
+
+  /**
+   * Records an input batch queued for the editor, consumed once {@link #markConsumed(long)} reaches its sequence.
+   *
+   * @param eventTime the event time of the batch, typically {@code MotionEvent.getEventTime()}.
+   * @param sequence the increasing sequence number of the batch.
+   */
+  synchronized void markQueued(long eventTime, long sequence)
+  {
+    // the consumer may be ahead of the producer
+    if (sequence <= consumedSequence)
+    {
+      markInput(eventTime);
+      return;
+    }
+    if (queuedCount == queuedTimes.length)
+    {
+      queuedTimes = grow(queuedTimes);
+      queuedSequences = grow(queuedSequences);
+    }
+    queuedTimes[queuedCount] = eventTime;
+    queuedSequences[queuedCount] = sequence;
+    ++queuedCount;
+  }
+
+  /**
+   * Records that the editor consumed the queued batches up to {@code sequence} (included).
+   */
+  synchronized void markConsumed(long sequence)
+  {
+    consumedSequence = Math.max(consumedSequence, sequence);
+    int count = 0;
+    while (count < queuedCount && queuedSequences[count] <= sequence)
+      markInput(queuedTimes[count++]);
+    if (count > 0)
+    {
+      queuedCount -= count;
+      System.arraycopy(queuedTimes, count, queuedTimes, 0, queuedCount);
+      System.arraycopy(queuedSequences, count, queuedSequences, 0, queuedCount);
+    }
+  }
+
+  /**
+   * Records the end of the current stroke, reported once its pending batches are displayed.
+   */
+  void endStroke()
+  {
+    Listener strokeListener;
+    synchronized (this)
+    {
+      isStrokeEnding = true;
+      if (queuedCount > 0 || pendingCount > 0 || drawnCount > 0)
+        return;
+      strokeListener = completeStroke();
+    }
+    reportStroke(strokeListener);
+  }
+
+  /**
+   * Records that a frame including the consumed batches is being drawn.
+   *
+   * @return {@code true} if some batches wait for the frame to be committed.
+   */
+  synchronized boolean markDrawn()
+  {
+    if (pendingCount > 0)
+    {
+      while (drawnCount + pendingCount > drawnTimes.length)
+        drawnTimes = grow(drawnTimes);
+      System.arraycopy(pendingTimes, 0, drawnTimes, drawnCount, pendingCount);
+      drawnCount += pendingCount;
+      pendingCount = 0;
+    }
+    return drawnCount > 0;
+  }
+
+  /**
+   * Records that the drawn frame is committed (displayed), measuring the latencies of its batches.
+   */
+  void markCommitted()
+  {
+    Listener strokeListener;
+    synchronized (this)
+    {
+      long now = SystemClock.uptimeMillis();
+      for (int i = 0; i < drawnCount; ++i)
+        strokeHistogram.add(now - drawnTimes[i]);
+      drawnCount = 0;
+      if (!isStrokeEnding || queuedCount > 0 || pendingCount > 0)
+        return;
+      strokeListener = completeStroke();
+    }
+    reportStroke(strokeListener);
+  }
+
+  @Nullable
+  private Listener completeStroke()
+  {
+    isStrokeEnding = false;
+    sessionHistogram.add(strokeHistogram);
+    return listener;
+  }
+
+  private void reportStroke(@Nullable Listener strokeListener)
+  {
+    if (strokeListener != null && strokeHistogram.getCount() > 0)
+      strokeListener.onStrokeLatency(strokeHistogram);
+    strokeHistogram.reset();
+  }
+
+  @NonNull
+  private static long[] grow(@NonNull long[] times)
+  {
+    long[] newTimes = new long[times.length * 2];
+    System.arraycopy(times, 0, newTimes, 0, times.length);
+    return newTimes;
+  }
+}
@@ -0,0 +1,373 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.os.SystemClock;
+
+import com.myscript.iink.IRenderTarget.LayerType;
+import com.myscript.iink.Renderer;
+import com.myscript.iink.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keeps the model and capture layers in separate bitmaps, so that each layer is only rendered in its own
+ * invalidated area, then composited (model underneath capture).
+ * <p>
+ * While writing, capture-only invalidations are narrowed to the area of the newest samples provided through
+ * {@link #addCaptureHint(int, int, int, int)}, so that the capture repaint cost is proportional to the new
+ * stroke segment rather than to the stroke or the screen.
+ * <p>
+ * Large model updates (conversion, undo of a whole page...) are split into tiles rendered by increasing distance
+ * from the focus point (last pen or touch location), as many as fit in the frame budget. The remaining tiles are
+ * carried over to the next frames, keeping the editor responsive during the re-rendering. Only content changes are
+ * tiled: when the viewport moved (scroll, zoom), the content of the model bitmap is at the previous offset and the
+ * whole model is redrawn, or composited from the prefetched content, in a single frame to avoid tearing.
+ */
+final class LayerCache
+{
+  private static final int TILE_SIZE = 256;
+  private static final int LARGE_AREA = 4 * TILE_SIZE * TILE_SIZE;
+  private static final float NS_IN_A_MS = 1000000f;
+
+  @Nullable
+  private Bitmap modelBitmap = null;
+  @Nullable
+  private android.graphics.Canvas modelCanvas = null;
+  @Nullable
+  private Bitmap captureBitmap = null;
+  @Nullable
+  private android.graphics.Canvas captureCanvas = null;
+  private int width = 0;
+  private int height = 0;
+
+  private final Region modelDirty = new Region();
+  private final Rect captureDirty = new Rect();
+  private final Rect captureHint = new Rect();
+  // the capture area repainted last frame must be repainted too, to erase previous temporary (predicted) ink
+  private final Rect previousCaptureArea = new Rect();
+  private final Rect invalidatedArea = new Rect();
+  private final Rect narrowedArea = new Rect();
+  private final Region localModelRegion = new Region();
+  private final Region tileRegion = new Region();
+  private final Rect localModelArea = new Rect();
+  private final Rect localCaptureArea = new Rect();
+  private final List<Rect> tiles = new ArrayList<>();
+  private final List<Rect> tilePool = new ArrayList<>();
+  private final Comparator<Rect> tileComparator = (a, b) -> Float.compare(distanceToFocus(a), distanceToFocus(b));
+  private final float frameBudgetMs;
+  private volatile float focusX = 0;
+  private volatile float focusY = 0;
+  // the viewport transform of the model bitmap content
+  private boolean hasModelTransform = false;
+  private float modelOffsetX = 0;
+  private float modelOffsetY = 0;
+  private float modelScale = 0;
+
+  /**
+   * @param frameBudgetMs the time (in ms) that can be spent rendering tiles of a large model update per frame.
+   */
+  LayerCache(float frameBudgetMs)
+  {
+    this.frameBudgetMs = frameBudgetMs;
+  }
+
+  /**
+   * Sets the location (in view coordinates) around which large model updates are rendered first.
+   */
+  void setFocus(float x, float y)
+  {
+    focusX = x;
+    focusY = y;
+  }
+
+  /**
+   * Sets the size of the layers, reusing the bitmaps when they are large enough.
+   * The whole layers are invalidated.
+   *
+   * @return {@code false} if the bitmaps could not be allocated.
+   */
+  boolean setSize(int width, int height)
+  {
+    if (width <= 0 || height <= 0)
+      return false;
+
+    if (modelBitmap == null || captureBitmap == null || width > modelBitmap.getWidth() || height > modelBitmap.getHeight())
+    {
+      release();
+      try
+      {
+        modelBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        captureBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      }
+      catch (Exception | OutOfMemoryError e)
+      {
+        release();
+        return false;
+      }
+      modelCanvas = new android.graphics.Canvas(modelBitmap);
+      captureCanvas = new android.graphics.Canvas(captureBitmap);
+    }
+
+    synchronized (this)
+    {
+      this.width = width;
+      this.height = height;
+      modelDirty.set(0, 0, width, height);
+      captureDirty.set(0, 0, width, height);
+      hasModelTransform = false;
+      captureHint.setEmpty();
+      previousCaptureArea.setEmpty();
+    }
+    return true;
+  }
+
+  boolean isReady()
+  {
+    return modelBitmap != null && captureBitmap != null;
+  }
+
+  /**
+   * @return the width of the layer bitmaps (at least the layer width), 0 if not allocated.
+   */
+  int getBitmapWidth()
+  {
+    return captureBitmap != null ? captureBitmap.getWidth() : 0;
+  }
+
+  /**
+   * @return the height of the layer bitmaps (at least the layer height), 0 if not allocated.
+   */
+  int getBitmapHeight()
+  {
+    return captureBitmap != null ? captureBitmap.getHeight() : 0;
+  }
+
+  synchronized boolean invalidate(int x, int y, int width, int height, @NonNull EnumSet<LayerType> layers)
+  {
+    invalidatedArea.set(x, y, x + width, y + height);
+    if (!invalidatedArea.intersect(0, 0, this.width, this.height))
+      return false;
+
+    if (layers.contains(LayerType.MODEL))
+      modelDirty.op(invalidatedArea, Region.Op.UNION);
+
+    if (layers.contains(LayerType.CAPTURE))
+    {
+      if (!layers.contains(LayerType.MODEL) && !captureHint.isEmpty())
+      {
+        narrowedArea.set(captureHint);
+        narrowedArea.union(previousCaptureArea);
+        if (narrowedArea.intersect(invalidatedArea))
+          captureDirty.union(narrowedArea);
+      }
+      else
+      {
+        captureDirty.union(invalidatedArea);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the area (in view coordinates) where new capture samples are expected to be drawn.
+   */
+  synchronized void addCaptureHint(int left, int top, int right, int bottom)
+  {
+    captureHint.union(left, top, right, bottom);
+  }
+
+  synchronized void clearCaptureHint()
+  {
+    captureHint.setEmpty();
+    previousCaptureArea.setEmpty();
+  }
+
+  /**
+   * Renders the invalidated areas of each layer, then composites both layers into the target canvas.
+   *
+   * @return {@code true} if some model tiles remain to be rendered in a next frame.
+   */
+  boolean draw(@NonNull android.graphics.Canvas target, @NonNull Renderer renderer, @NonNull Canvas iinkCanvas,
+            @Nullable ViewportPrefetcher prefetcher)
+  {
+    android.graphics.Canvas modelCanvas = this.modelCanvas;
+    android.graphics.Canvas captureCanvas = this.captureCanvas;
+    if (modelCanvas == null || captureCanvas == null)
+      return false;
+
+    // the model content of a previous viewport cannot be kept, not even partially
+    Point offset = renderer.getViewOffset();
+    float scale = renderer.getViewScale();
+    boolean viewportChanged = !hasModelTransform || offset.x != modelOffsetX || offset.y != modelOffsetY || scale != modelScale;
+    hasModelTransform = true;
+    modelOffsetX = offset.x;
+    modelOffsetY = offset.y;
+    modelScale = scale;
+
+    boolean fullModel;
+    synchronized (this)
+    {
+      if (viewportChanged)
+        modelDirty.set(0, 0, width, height);
+      localModelRegion.set(modelDirty);
+      localCaptureArea.set(captureDirty);
+      localModelArea.set(modelDirty.getBounds());
+      fullModel = modelDirty.isRect() && localModelArea.left <= 0 && localModelArea.top <= 0
+          && localModelArea.right >= width && localModelArea.bottom >= height;
+      modelDirty.setEmpty();
+      captureDirty.setEmpty();
+      previousCaptureArea.set(localCaptureArea);
+      captureHint.setEmpty();
+    }
+
+    boolean pending = false;
+    if (!localModelRegion.isEmpty())
+    {
+      iinkCanvas.setCanvas(modelCanvas);
+      boolean composited = fullModel && prefetcher != null && compositeModel(modelCanvas, renderer, prefetcher, localModelArea);
+      if (!composited)
+      {
+        if (viewportChanged || localModelArea.width() * localModelArea.height() <= LARGE_AREA)
+          drawModel(modelCanvas, renderer, iinkCanvas, localModelArea);
+        else
+          pending = drawModelTiles(modelCanvas, renderer, iinkCanvas);
+      }
+    }
+
+    if (!localCaptureArea.isEmpty())
+    {
+      iinkCanvas.setCanvas(captureCanvas);
+      captureCanvas.save();
+      try
+      {
+        captureCanvas.clipRect(localCaptureArea);
+        captureCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        renderer.drawCaptureStrokes(localCaptureArea.left, localCaptureArea.top, localCaptureArea.width(), localCaptureArea.height(), iinkCanvas);
+      }
+      finally
+      {
+        captureCanvas.restore();
+      }
+    }
+
+    target.drawBitmap(modelBitmap, 0, 0, null);
+    target.drawBitmap(captureBitmap, 0, 0, null);
+    return pending;
+  }
+
+  private static android.graphics.Canvas clearArea(@NonNull android.graphics.Canvas canvas, @NonNull Rect area)
+  {
+    canvas.save();
+    canvas.clipRect(area);
+    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    return canvas;
+  }
+
+  private static boolean compositeModel(@NonNull android.graphics.Canvas modelCanvas, @NonNull Renderer renderer,
+                                        @NonNull ViewportPrefetcher prefetcher, @NonNull Rect area)
+  {
+    clearArea(modelCanvas, area);
+    try
+    {
+      return prefetcher.composite(modelCanvas, renderer);
+    }
+    finally
+    {
+      modelCanvas.restore();
+    }
+  }
+
+  private static void drawModel(@NonNull android.graphics.Canvas modelCanvas, @NonNull Renderer renderer, @NonNull Canvas iinkCanvas, @NonNull Rect area)
+  {
+    clearArea(modelCanvas, area);
+    try
+    {
+      renderer.drawModel(area.left, area.top, area.width(), area.height(), iinkCanvas);
+    }
+    finally
+    {
+      modelCanvas.restore();
+    }
+  }
+
+  private boolean drawModelTiles(@NonNull android.graphics.Canvas modelCanvas, @NonNull Renderer renderer, @NonNull Canvas iinkCanvas)
+  {
+    // split the invalidated area in tiles, closest to the focus first
+    tilePool.addAll(tiles);
+    tiles.clear();
+    // (areas are clipped to the view, coordinates are positive)
+    for (int top = localModelArea.top - localModelArea.top % TILE_SIZE; top < localModelArea.bottom; top += TILE_SIZE)
+    {
+      for (int left = localModelArea.left - localModelArea.left % TILE_SIZE; left < localModelArea.right; left += TILE_SIZE)
+      {
+        Rect tile = tilePool.isEmpty() ? new Rect() : tilePool.remove(tilePool.size() - 1);
+        tile.set(left, top, left + TILE_SIZE, top + TILE_SIZE);
+        tileRegion.set(tile);
+        if (tileRegion.op(localModelRegion, Region.Op.INTERSECT))
+        {
+          // only render the invalidated part of the tile
+          tile.set(tileRegion.getBounds());
+          tiles.add(tile);
+        }
+        else
+        {
+          tilePool.add(tile);
+        }
+      }
+    }
+    Collections.sort(tiles, tileComparator);
+
+    long start = SystemClock.elapsedRealtimeNanos();
+    int index = 0;
+    // always render at least one tile per frame to make progress
+    do
+    {
+      Rect tile = tiles.get(index++);
+      drawModel(modelCanvas, renderer, iinkCanvas, tile);
+      localModelRegion.op(tile, Region.Op.DIFFERENCE);
+    }
+    while (index < tiles.size() && (SystemClock.elapsedRealtimeNanos() - start) / NS_IN_A_MS < frameBudgetMs);
+
+    if (localModelRegion.isEmpty())
+      return false;
+
+    // carry the remaining tiles over to the next frame
+    synchronized (this)
+    {
+      modelDirty.op(localModelRegion, Region.Op.UNION);
+    }
+    return true;
+  }
+
+  private float distanceToFocus(@NonNull Rect tile)
+  {
+    float dx = tile.exactCenterX() - focusX;
+    float dy = tile.exactCenterY() - focusY;
+    return dx * dx + dy * dy;
+  }
+
+  void release()
+  {
+    if (modelBitmap != null)
+      modelBitmap.recycle();
+    if (captureBitmap != null)
+      captureBitmap.recycle();
+    modelBitmap = null;
+    modelCanvas = null;
+    captureBitmap = null;
+    captureCanvas = null;
+  }
+}
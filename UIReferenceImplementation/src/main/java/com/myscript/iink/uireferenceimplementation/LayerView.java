@@ -2,13 +2,16 @@
 
 package com.myscript.iink.uireferenceimplementation;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.View;
@@ -24,6 +27,7 @@
 import java.util.List;
 import java.util.Map;
 
+import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -31,6 +35,7 @@ public class LayerView extends View
 {
   private final static int MODEL = 0;
   private final static int CAPTURE = 1;
+  private final static int PREFETCH_HEAP_FRACTION = 4;
   private ImageLoader imageLoader;
 
   @Nullable
@@ -43,6 +48,8 @@ public class LayerView extends View
   private OfflineSurfaceManager offlineSurfaceManager = null;
   @Nullable
   private Renderer renderer = null;
+  @Nullable
+  private Editor editor = null;
   @NonNull
   private Rect updateArea = new Rect(0, 0, 0, 0);
   @NonNull
@@ -63,6 +70,28 @@ public class LayerView extends View
   private int canvasHeight = 0;
   private int xMin = 0;
   private int yMin = 0;
+  private int prefetchMargin = 0;
+  private boolean isPrefetchSuspended = false;
+  @Nullable
+  private ViewportPrefetcher prefetcher = null;
+  @Nullable
+  private LayerCache layerCache = null;
+  @NonNull
+  private final Paint predictionPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private boolean hasPredictedSegment = false;
+  private float predictedFromX;
+  private float predictedFromY;
+  private float predictedToX;
+  private float predictedToY;
+  @Nullable
+  private LatencyTracker latencyTracker = null;
+  private boolean isFrameCommitCallbackRegistered = false;
+  private final Runnable frameCommitCallback = () -> {
+    isFrameCommitCallbackRegistered = false;
+    LatencyTracker tracker = latencyTracker;
+    if (tracker != null)
+      tracker.markCommitted();
+  };
 
   public LayerView(Context context)
   {
@@ -77,6 +106,8 @@ public LayerView(Context context, @Nullable AttributeSet attrs)
   public LayerView(Context context, @Nullable AttributeSet attrs, int defStyleAttr)
   {
     super(context, attrs, defStyleAttr);
+    predictionPaint.setStyle(Paint.Style.STROKE);
+    predictionPaint.setStrokeCap(Paint.Cap.ROUND);
   }
 
   public void setRenderTarget(IRenderTarget renderTarget)
@@ -96,7 +127,8 @@ public void setOfflineSurfaceManager(@Nullable OfflineSurfaceManager offlineSurf
 
   public void setEditor(Editor editor)
   {
-    // do not need the editor
+    // only used to render the areas exposed by a resize
+    this.editor = editor;
   }
 
   public void setImageLoader(ImageLoader imageLoader)
@@ -109,10 +141,344 @@ public void setCustomTypefaces(Map<String, Typeface> typefaceMap)
     this.typefaceMap = typefaceMap;
   }
 
+  /**
+   * Sets the tracker measuring the time between input and display. Must be called from the UI thread.
+   */
+  public void setLatencyTracker(@Nullable LatencyTracker latencyTracker)
+  {
+    this.latencyTracker = latencyTracker;
+  }
+
+  @Nullable
+  public LatencyTracker getLatencyTracker()
+  {
+    return latencyTracker;
+  }
+
+  /**
+   * Displays a predicted stroke segment on top of the layers, replacing the previous one.
+   * Must be called from the UI thread.
+   *
+   * @param width the stroke width, in pixels.
+   */
+  public void setPredictedSegment(float fromX, float fromY, float toX, float toY, float width, @ColorInt int color)
+  {
+    invalidatePredictedSegment();
+    predictedFromX = fromX;
+    predictedFromY = fromY;
+    predictedToX = toX;
+    predictedToY = toY;
+    predictionPaint.setStrokeWidth(width);
+    predictionPaint.setColor(color);
+    hasPredictedSegment = true;
+    invalidatePredictedSegment();
+  }
+
+  /**
+   * Removes the predicted stroke segment, if any. Must be called from the UI thread.
+   */
+  public void clearPredictedSegment()
+  {
+    if (hasPredictedSegment)
+    {
+      invalidatePredictedSegment();
+      hasPredictedSegment = false;
+    }
+  }
+
+  private void invalidatePredictedSegment()
+  {
+    if (!hasPredictedSegment)
+      return;
+    float halfWidth = predictionPaint.getStrokeWidth() / 2 + 1;
+    postInvalidateOnAnimation((int) Math.floor(Math.min(predictedFromX, predictedToX) - halfWidth),
+        (int) Math.floor(Math.min(predictedFromY, predictedToY) - halfWidth),
+        (int) Math.ceil(Math.max(predictedFromX, predictedToX) + halfWidth),
+        (int) Math.ceil(Math.max(predictedFromY, predictedToY) + halfWidth));
+  }
+
+  /**
+   * Enables the prefetch of the content around the viewport during idle time, so that scrolling within
+   * the given margin is composited from prepared content.
+   *
+   * @param prefetchMargin the margin around the viewport (in pixels), 0 disables prefetching.
+   */
+  public void setPrefetchMargin(int prefetchMargin)
+  {
+    this.prefetchMargin = prefetchMargin;
+    if (prefetchMargin <= 0)
+    {
+      releasePrefetcher();
+    }
+    else if (prefetcher != null)
+    {
+      prefetcher.setMargin(prefetchMargin);
+      prefetcher.setMaxMemoryBytes(getPrefetchMemoryBudget());
+    }
+    else if (canvasWidth > 0 && canvasHeight > 0)
+    {
+      createPrefetcher();
+    }
+  }
+
+  /**
+   * Enables rendering the model and capture layers in separate cached bitmaps, so that capture updates
+   * only repaint the area of the newest samples (see {@link #addCaptureUpdateHint(int, int, int, int)}).
+   *
+   * @param enabled {@code true} to enable layer caching, at the expense of two view-sized bitmaps.
+   */
+  public void setLayerCacheEnabled(boolean enabled)
+  {
+    if (enabled && layerCache == null)
+    {
+      LayerCache newLayerCache = new LayerCache(FrameTimeEstimator.getFrameTime(getContext()) / 2);
+      if (canvasWidth > 0 && canvasHeight > 0 && !newLayerCache.setSize(canvasWidth, canvasHeight))
+        return;
+      synchronized (this)
+      {
+        layerCache = newLayerCache;
+      }
+    }
+    else if (!enabled && layerCache != null)
+    {
+      LayerCache oldLayerCache;
+      synchronized (this)
+      {
+        oldLayerCache = layerCache;
+        layerCache = null;
+        updateArea.set(0, 0, canvasWidth, canvasHeight);
+      }
+      oldLayerCache.release();
+      postInvalidate();
+    }
+  }
+
+  /**
+   * Provides the area (in view coordinates) where the newest capture samples will be drawn, so that the
+   * following capture-only invalidations are narrowed to it. Only effective when layer caching is enabled.
+   */
+  public void addCaptureUpdateHint(int left, int top, int right, int bottom)
+  {
+    LayerCache cache;
+    synchronized (this)
+    {
+      cache = layerCache;
+    }
+    if (cache != null)
+      cache.addCaptureHint(left, top, right, bottom);
+  }
+
+  /**
+   * Sets the location (in view coordinates) around which large model updates are rendered first,
+   * typically the last pen or touch location. Only effective when layer caching is enabled.
+   */
+  public void setRenderFocus(float x, float y)
+  {
+    LayerCache cache;
+    synchronized (this)
+    {
+      cache = layerCache;
+    }
+    if (cache != null)
+      cache.setFocus(x, y);
+  }
+
+  public void clearCaptureUpdateHint()
+  {
+    LayerCache cache;
+    synchronized (this)
+    {
+      cache = layerCache;
+    }
+    if (cache != null)
+      cache.clearCaptureHint();
+  }
+
+  /**
+   * Prepares capture rendering (extra brush renderer) ahead of the first stroke, typically when a stylus starts
+   * hovering the view, so that the first stroke does not stutter. Must be called from the UI thread.
+   *
+   * @return the time spent preparing, in ms, 0 if already prepared.
+   */
+  public float warmUpCapture()
+  {
+    Canvas canvas;
+    int width;
+    int height;
+    synchronized (this)
+    {
+      canvas = iinkCanvas;
+      // strokes are drawn into the layer bitmaps, the intermediate bitmap, or the view canvas
+      if (layerCache != null && layerCache.isReady())
+      {
+        width = layerCache.getBitmapWidth();
+        height = layerCache.getBitmapHeight();
+      }
+      else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P && bitmap != null)
+      {
+        width = bitmap.getWidth();
+        height = bitmap.getHeight();
+      }
+      else
+      {
+        width = canvasWidth;
+        height = canvasHeight;
+      }
+    }
+    if (canvas == null)
+      return 0;
+
+    long start = SystemClock.elapsedRealtimeNanos();
+    if (!canvas.prepareExtraBrushes(width, height))
+      return 0;
+    return (SystemClock.elapsedRealtimeNanos() - start) / 1000000f;
+  }
+
+  public void cancelPrefetch()
+  {
+    if (prefetcher != null)
+      prefetcher.cancel();
+  }
+
+  /**
+   * Suspends the prefetch while the user interacts with the view, until resumed. Must be called from the UI thread.
+   */
+  public void setPrefetchSuspended(boolean suspended)
+  {
+    isPrefetchSuspended = suspended;
+    if (prefetcher != null)
+      prefetcher.setSuspended(suspended);
+  }
+
+  private void createPrefetcher()
+  {
+    DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
+    Canvas prefetchCanvas = new Canvas(null, extraBrushConfigs, typefaceMap, imageLoader, offlineSurfaceManager, metrics.xdpi, metrics.ydpi);
+    ViewportPrefetcher newPrefetcher = new ViewportPrefetcher(prefetchCanvas, FrameTimeEstimator.getFrameTime(getContext()) / 2);
+    newPrefetcher.setMaxMemoryBytes(getPrefetchMemoryBudget());
+    newPrefetcher.setMargin(prefetchMargin);
+    newPrefetcher.setSuspended(isPrefetchSuspended);
+    synchronized (this)
+    {
+      prefetcher = newPrefetcher;
+    }
+  }
+
+  // sized for the surfaces of the view with the requested margin, within a fraction of the heap
+  // (larger screens come with larger heaps), never below the default budget
+  private int getPrefetchMemoryBudget()
+  {
+    long requiredBytes = ViewportPrefetcher.getRequiredMemoryBytes(canvasWidth, canvasHeight, prefetchMargin);
+    ActivityManager activityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+    long maxBytes = ViewportPrefetcher.DEFAULT_MAX_MEMORY_BYTES;
+    if (activityManager != null)
+      maxBytes = Math.max(maxBytes, activityManager.getMemoryClass() * 1024L * 1024L / PREFETCH_HEAP_FRACTION);
+    return (int) Math.max(ViewportPrefetcher.DEFAULT_MAX_MEMORY_BYTES, Math.min(requiredBytes, maxBytes));
+  }
+
+  private void releasePrefetcher()
+  {
+    ViewportPrefetcher oldPrefetcher;
+    synchronized (this)
+    {
+      oldPrefetcher = prefetcher;
+      prefetcher = null;
+    }
+    if (oldPrefetcher != null)
+      oldPrefetcher.release();
+  }
+
+  @Override
+  protected void onAttachedToWindow()
+  {
+    super.onAttachedToWindow();
+    // re-create what was released on detach, onSizeChanged is not called again when the size is unchanged
+    if (canvasWidth <= 0 || canvasHeight <= 0)
+      return;
+    synchronized (this)
+    {
+      createCanvas(canvasWidth, canvasHeight);
+      updateArea.set(0, 0, canvasWidth, canvasHeight);
+    }
+    if (prefetchMargin > 0 && prefetcher == null)
+      createPrefetcher();
+    if (layerCache != null && !layerCache.isReady() && !layerCache.setSize(canvasWidth, canvasHeight))
+      setLayerCacheEnabled(false);
+    postInvalidate();
+  }
+
+  @Override
+  protected void onDetachedFromWindow()
+  {
+    // release graphic resources but keep the configuration (layer cache, prefetch) for a later attach
+    releasePrefetcher();
+    synchronized (this)
+    {
+      if (layerCache != null)
+        layerCache.release();
+      if (iinkCanvas != null)
+      {
+        iinkCanvas.destroy();
+        iinkCanvas = null;
+      }
+      if (bitmap != null)
+      {
+        bitmap.recycle();
+        bitmap = null;
+        sysCanvas = null;
+      }
+    }
+    super.onDetachedFromWindow();
+  }
+
   @Override
   protected final void onDraw(android.graphics.Canvas canvas)
   {
     super.onDraw(canvas);
+    drawLayers(canvas);
+    if (hasPredictedSegment)
+      canvas.drawLine(predictedFromX, predictedFromY, predictedToX, predictedToY, predictionPaint);
+
+    LatencyTracker tracker = latencyTracker;
+    if (tracker != null && tracker.markDrawn())
+    {
+      // the samples are on screen when the frame is committed
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+      {
+        if (!isFrameCommitCallbackRegistered)
+        {
+          getViewTreeObserver().registerFrameCommitCallback(frameCommitCallback);
+          isFrameCommitCallbackRegistered = true;
+        }
+      }
+      else
+      {
+        tracker.markCommitted();
+      }
+    }
+  }
+
+  private void drawLayers(android.graphics.Canvas canvas)
+  {
+    // Composite cached layers, each of them being rendered in its own invalidated area
+    if (layerCache != null && layerCache.isReady())
+    {
+      Renderer renderer;
+      synchronized (this)
+      {
+        renderer = lastRenderer;
+      }
+
+      if (renderer != null)
+      {
+        // a large model update is rendered over several frames
+        if (layerCache.draw(canvas, renderer, iinkCanvas, prefetcher))
+          postInvalidateOnAnimation();
+        else if (prefetcher != null)
+          prefetcher.schedule(renderer, canvasWidth, canvasHeight);
+      }
+      return;
+    }
 
     // Draw directly in hardware-accelerated Canvas if scaling is supported (since API 28)
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
@@ -129,13 +495,17 @@ protected final void onDraw(android.graphics.Canvas canvas)
 
       try
       {
-        renderer.drawModel(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
+        if (prefetcher == null || !prefetcher.composite(canvas, renderer))
+          renderer.drawModel(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
         renderer.drawCaptureStrokes(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
       }
       finally
       {
         restore(canvas);
       }
+
+      if (prefetcher != null)
+        prefetcher.schedule(renderer, canvasWidth, canvasHeight);
     }
     else // Draw in intermediate bitmap
     {
@@ -151,16 +521,21 @@ protected final void onDraw(android.graphics.Canvas canvas)
 
       if (!localUpdateArea.isEmpty())
       {
+        iinkCanvas.setCanvas(sysCanvas);
         prepare(sysCanvas, localUpdateArea);
         try
         {
-          renderer.drawModel(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
+          if (prefetcher == null || !prefetcher.composite(sysCanvas, renderer))
+            renderer.drawModel(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
           renderer.drawCaptureStrokes(localUpdateArea.left, localUpdateArea.top, localUpdateArea.width(), localUpdateArea.height(), iinkCanvas);
         }
         finally
         {
           restore(sysCanvas);
         }
+
+        if (prefetcher != null)
+          prefetcher.schedule(renderer, canvasWidth, canvasHeight);
       }
 
       canvas.drawBitmap(bitmap, 0, 0, null);
@@ -170,37 +545,83 @@ protected final void onDraw(android.graphics.Canvas canvas)
   @Override
   protected void onSizeChanged(int newWidth, int newHeight, int oldWidth, int oldHeight)
   {
-    DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
-
     synchronized (this)
     {
-      // Direct draw
-      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+      createCanvas(newWidth, newHeight);
+      canvasWidth = newWidth;
+      canvasHeight = newHeight;
+    }
+
+    if (prefetchMargin > 0 && prefetcher == null)
+      createPrefetcher();
+    else if (prefetcher != null)
+      prefetcher.setMaxMemoryBytes(getPrefetchMemoryBudget());
+
+    if (layerCache != null && !layerCache.setSize(newWidth, newHeight))
+      setLayerCacheEnabled(false);
+
+    // already displayed content is kept across resizes, only render the newly exposed areas, now that they are
+    // within the canvas (the editor invalidates the content it lays out again, if any)
+    Editor editor = this.editor;
+    if (editor != null && !editor.isClosed())
+    {
+      Renderer renderer = editor.getRenderer();
+      EnumSet<LayerType> layers = EnumSet.allOf(LayerType.class);
+      if (oldWidth <= 0 || oldHeight <= 0)
+      {
+        update(renderer, 0, 0, newWidth, newHeight, layers);
+      }
+      else
       {
-        if (iinkCanvas != null)
-          iinkCanvas.destroy();
+        if (newWidth > oldWidth)
+          update(renderer, oldWidth, 0, newWidth - oldWidth, newHeight, layers);
+        if (newHeight > oldHeight)
+          update(renderer, 0, oldHeight, Math.min(oldWidth, newWidth), newHeight - oldHeight, layers);
+      }
+    }
+
+    super.onSizeChanged(newWidth, newHeight, oldWidth, oldHeight);
+  }
+
+  // must hold the view lock
+  private void createCanvas(int newWidth, int newHeight)
+  {
+    DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
 
+    // Direct draw
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+    {
+      // the canvas (and its GL state) does not depend on the view size, keep it across resizes
+      if (iinkCanvas == null)
         iinkCanvas = new Canvas(null, extraBrushConfigs, typefaceMap, imageLoader, offlineSurfaceManager, metrics.xdpi, metrics.ydpi);
-      }
-      else // Bitmap draw
+    }
+    else // Bitmap draw
+    {
+      // only grow the backing bitmap when needed, shrinking reuses the existing one
+      if (bitmap == null || newWidth > bitmap.getWidth() || newHeight > bitmap.getHeight())
       {
+        int bitmapWidth = bitmap != null ? Math.max(newWidth, bitmap.getWidth()) : newWidth;
+        int bitmapHeight = bitmap != null ? Math.max(newHeight, bitmap.getHeight()) : newHeight;
+        Bitmap newBitmap = Bitmap.createBitmap(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        android.graphics.Canvas newSysCanvas = new android.graphics.Canvas(newBitmap);
         if (bitmap != null)
+        {
+          // keep already rendered content, so that only newly exposed areas have to be rendered
+          newSysCanvas.drawBitmap(bitmap, 0, 0, null);
           bitmap.recycle();
-        if (iinkCanvas != null)
-          iinkCanvas.destroy();
-
-        bitmap = Bitmap.createBitmap(newWidth, newHeight, Bitmap.Config.ARGB_8888);
-        sysCanvas = new android.graphics.Canvas(bitmap);
-        iinkCanvas = new Canvas(sysCanvas, extraBrushConfigs, typefaceMap, imageLoader, offlineSurfaceManager, metrics.xdpi, metrics.ydpi);
+        }
+        bitmap = newBitmap;
+        sysCanvas = newSysCanvas;
       }
 
-      iinkCanvas.setClearOnStartDraw(false);
-      iinkCanvas.setKeepGLRenderer(true);
-      canvasWidth = newWidth;
-      canvasHeight = newHeight;
+      if (iinkCanvas == null)
+        iinkCanvas = new Canvas(sysCanvas, extraBrushConfigs, typefaceMap, imageLoader, offlineSurfaceManager, metrics.xdpi, metrics.ydpi);
+      else
+        iinkCanvas.setCanvas(sysCanvas);
     }
 
-    super.onSizeChanged(newWidth, newHeight, oldWidth, oldHeight);
+    iinkCanvas.setClearOnStartDraw(false);
+    iinkCanvas.setKeepGLRenderer(true);
   }
 
   private void prepare(android.graphics.Canvas canvas, Rect clipRect)
@@ -217,6 +638,37 @@ private void restore(android.graphics.Canvas canvas)
   }
 
   public final void update(Renderer renderer, int x, int y, int width, int height)
+  {
+    update(renderer, x, y, width, height, EnumSet.allOf(LayerType.class));
+  }
+
+  public final void update(Renderer renderer, int x, int y, int width, int height, @NonNull EnumSet<LayerType> layers)
+  {
+    synchronized (this)
+    {
+      if (prefetcher != null && layers.contains(LayerType.MODEL))
+        prefetcher.invalidateContent();
+      if (layerCache != null)
+        layerCache.invalidate(x, y, width, height, layers);
+    }
+    updateArea(renderer, x, y, width, height);
+  }
+
+  /**
+   * Requests a redraw after a viewport change (e.g. scroll) that did not modify the content,
+   * which allows compositing prefetched content.
+   */
+  public final void updateViewport(Renderer renderer)
+  {
+    synchronized (this)
+    {
+      if (layerCache != null)
+        layerCache.invalidate(0, 0, canvasWidth, canvasHeight, EnumSet.allOf(LayerType.class));
+    }
+    updateArea(renderer, 0, 0, canvasWidth, canvasHeight);
+  }
+
+  private void updateArea(Renderer renderer, int x, int y, int width, int height)
   {
     boolean emptyArea;
 
@@ -0,0 +1,165 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Measures the accuracy of motion predictions: each prediction is compared to the real position at the predicted
+ * time (interpolated between the real samples around it).
+ * <p>
+ * The overshoot is the part of the error along the direction of motion, positive when the prediction is ahead of
+ * the pen. Distances are in pixels.
+ * <p>
+ * Predictions are made ahead of time, several may be pending until the real samples reach their time: they are
+ * kept in a small queue, ordered by time.
+ */
+public final class MotionPredictionMetrics
+{
+  // a prediction per frame, at most a few frames ahead
+  private static final int MAX_PENDING = 16;
+  private static final int MASK = MAX_PENDING - 1;
+
+  private final long[] predictionTs = new long[MAX_PENDING];
+  private final float[] predictionXs = new float[MAX_PENDING];
+  private final float[] predictionYs = new float[MAX_PENDING];
+  private int pendingHead = 0;
+  private int pendingCount = 0;
+  private boolean hasSample = false;
+  private long lastT;
+  private float lastX;
+  private float lastY;
+
+  private int count = 0;
+  private double errorSum = 0;
+  private float maxError = 0;
+  private double overshootSum = 0;
+  private int overshootCount = 0;
+
+  /**
+   * Starts a new stroke. The predictions still pending went beyond the end of the previous stroke: there is no real
+   * position to compare them to, they are discarded.
+   */
+  synchronized void startStroke()
+  {
+    pendingCount = 0;
+    hasSample = false;
+  }
+
+  /**
+   * Records a prediction, measured once a real sample reaches its time.
+   */
+  synchronized void addPrediction(long t, float x, float y)
+  {
+    // keeps the queue ordered by time: a prediction replaces the pending ones that are not before it
+    while (pendingCount > 0 && predictionTs[(pendingHead + pendingCount - 1) & MASK] >= t)
+      --pendingCount;
+    if (pendingCount == MAX_PENDING)
+    {
+      // the oldest prediction is dropped
+      pendingHead = (pendingHead + 1) & MASK;
+      --pendingCount;
+    }
+    int index = (pendingHead + pendingCount) & MASK;
+    predictionTs[index] = t;
+    predictionXs[index] = x;
+    predictionYs[index] = y;
+    ++pendingCount;
+  }
+
+  /**
+   * Adds a real sample, measuring the pending predictions whose time it reaches.
+   */
+  synchronized void addSample(long t, float x, float y)
+  {
+    while (pendingCount > 0 && predictionTs[pendingHead] <= t)
+    {
+      long predictionT = predictionTs[pendingHead];
+      if (hasSample && t > lastT && predictionT >= lastT)
+        measure(predictionT, predictionXs[pendingHead], predictionYs[pendingHead], t, x, y);
+      pendingHead = (pendingHead + 1) & MASK;
+      --pendingCount;
+    }
+    hasSample = true;
+    lastT = t;
+    lastX = x;
+    lastY = y;
+  }
+
+  // compares a prediction to the real position, interpolated between the last sample and the new one
+  private void measure(long predictionT, float predictionX, float predictionY, long t, float x, float y)
+  {
+    float ratio = (float) (predictionT - lastT) / (t - lastT);
+    float actualX = lastX + ratio * (x - lastX);
+    float actualY = lastY + ratio * (y - lastY);
+    float errorX = predictionX - actualX;
+    float errorY = predictionY - actualY;
+    float error = (float) Math.hypot(errorX, errorY);
+    ++count;
+    errorSum += error;
+    maxError = Math.max(maxError, error);
+
+    float directionLength = (float) Math.hypot(x - lastX, y - lastY);
+    if (directionLength > 0)
+    {
+      float overshoot = (errorX * (x - lastX) + errorY * (y - lastY)) / directionLength;
+      if (overshoot > 0)
+      {
+        overshootSum += overshoot;
+        ++overshootCount;
+      }
+    }
+  }
+
+  public synchronized int getCount()
+  {
+    return count;
+  }
+
+  public synchronized float getMeanError()
+  {
+    return count > 0 ? (float) (errorSum / count) : 0;
+  }
+
+  public synchronized float getMaxError()
+  {
+    return maxError;
+  }
+
+  /**
+   * @return the mean overshoot of the predictions that went ahead of the pen.
+   */
+  public synchronized float getMeanOvershoot()
+  {
+    return overshootCount > 0 ? (float) (overshootSum / overshootCount) : 0;
+  }
+
+  /**
+   * @return the ratio of predictions that went ahead of the pen.
+   */
+  public synchronized float getOvershootRatio()
+  {
+    return count > 0 ? (float) overshootCount / count : 0;
+  }
+
+  public synchronized void reset()
+  {
+    pendingCount = 0;
+    hasSample = false;
+    count = 0;
+    errorSum = 0;
+    maxError = 0;
+    overshootSum = 0;
+    overshootCount = 0;
+  }
+
+  @NonNull
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(Locale.US, "predictions: %d, mean error: %.2fpx, max error: %.2fpx, overshoot: %.0f%% (mean %.2fpx)",
+        count, getMeanError(), maxError, 100 * getOvershootRatio(), getMeanOvershoot());
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.PointerEvent;
+import com.myscript.iink.PointerEventType;
+import com.myscript.iink.PointerType;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Reusable batch of pointer events, refilled in place for each motion event so that sending the historical
+ * samples to the editor does not allocate while writing.
+ * <p>
+ * {@code Editor.pointerEvents()} expects an array of the exact batch length, so an array is kept per length,
+ * all of them sharing the same event objects. Allocations only happen when a batch longer than all previous
+ * ones is requested.
+ */
+final class PointerEventBatch
+{
+  private final boolean withTilt;
+  @NonNull
+  private PointerEvent[] events = new PointerEvent[0];
+  // arrays[n] holds the n first events
+  @NonNull
+  private PointerEvent[][] arrays = new PointerEvent[1][];
+
+  /**
+   * @param withTilt {@code true} if the events carry tilt and orientation values (stylus),
+   *                 {@code false} if they keep the default ones.
+   */
+  PointerEventBatch(boolean withTilt)
+  {
+    this.withTilt = withTilt;
+    arrays[0] = events;
+  }
+
+  /**
+   * @return an array of {@code size} events, to be filled with {@link #set}.
+   */
+  @NonNull
+  PointerEvent[] obtain(int size)
+  {
+    ensureCapacity(size);
+    return arrays[size];
+  }
+
+  /**
+   * Makes sure that events up to index {@code size - 1} can be {@link #set}, keeping the values already set.
+   */
+  void ensureCapacity(int size)
+  {
+    if (size >= arrays.length)
+      grow(size);
+  }
+
+  void set(int index, @NonNull PointerEventType eventType, float x, float y, long t, float f, @NonNull PointerType pointerType, int pointerId)
+  {
+    PointerEvent event = events[index];
+    event.eventType = eventType;
+    event.x = x;
+    event.y = y;
+    event.t = t;
+    event.f = f;
+    event.pointerType = pointerType;
+    event.pointerId = pointerId;
+  }
+
+  void set(int index, @NonNull PointerEventType eventType, float x, float y, long t, float f, float tilt, float orientation,
+           @NonNull PointerType pointerType, int pointerId)
+  {
+    set(index, eventType, x, y, t, f, pointerType, pointerId);
+    if (withTilt)
+    {
+      PointerEvent event = events[index];
+      event.tilt = tilt;
+      event.orientation = orientation;
+    }
+  }
+
+  private void grow(int size)
+  {
+    PointerEvent[] newEvents = new PointerEvent[size];
+    System.arraycopy(events, 0, newEvents, 0, events.length);
+    for (int i = events.length; i < size; ++i)
+    {
+      if (withTilt)
+        newEvents[i] = new PointerEvent(PointerEventType.MOVE, 0, 0, 0, 0, 0, 0, PointerType.PEN, 0);
+      else
+        newEvents[i] = new PointerEvent(PointerEventType.MOVE, 0, 0, 0, 0, PointerType.PEN, 0);
+    }
+
+    PointerEvent[][] newArrays = new PointerEvent[size + 1][];
+    System.arraycopy(arrays, 0, newArrays, 0, arrays.length);
+    for (int n = arrays.length; n <= size; ++n)
+    {
+      newArrays[n] = new PointerEvent[n];
+      System.arraycopy(newEvents, 0, newArrays[n], 0, n);
+    }
+
+    events = newEvents;
+    arrays = newArrays;
+  }
+}
@@ -0,0 +1,401 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.os.Process;
+import android.util.Log;
+import android.view.MotionEvent;
+
+import com.myscript.iink.Editor;
+import com.myscript.iink.PointerEventType;
+import com.myscript.iink.PointerType;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Thread owning the pointer calls to the editor, so that ink capture does not depend on the UI thread load.
+ * <p>
+ * Samples are copied by the UI thread (single producer) into a lock-free ring buffer, and drained by this
+ * thread (single consumer): consecutive moves are sent to the editor as a single batch.
+ * <p>
+ * The UI thread never waits long for a full ring (the editor may be busy): moves that do not fit are coalesced into
+ * the latest one, published as soon as there is room, and a few slots are reserved for downs, ups and cancels.
+ */
+final class PointerInputThread extends Thread
+{
+  static final int DOWN = 0;
+  static final int MOVE = 1;
+  static final int UP = 2;
+  static final int CANCEL = 3;
+
+  private static final String TAG = "PointerInputThread";
+  private static final int CAPACITY = 1024; // power of 2
+  private static final int MASK = CAPACITY - 1;
+  // slots kept for downs, ups and cancels, when moves fill the ring
+  private static final int RESERVED_SLOTS = 16;
+  private static final long MOVE_WAIT_NS = 2000000L;
+  // other events are dropped after this wait, well before the UI thread is reported not responding
+  private static final long EVENT_WAIT_NS = 200000000L;
+  private static final long PARK_NS = 50000L;
+
+  @NonNull
+  private final Editor editor;
+
+  // ring buffer slots
+  private final int[] types = new int[CAPACITY];
+  private final float[] xs = new float[CAPACITY];
+  private final float[] ys = new float[CAPACITY];
+  private final long[] ts = new long[CAPACITY];
+  private final float[] fs = new float[CAPACITY];
+  private final float[] tilts = new float[CAPACITY];
+  private final float[] orientations = new float[CAPACITY];
+  private final boolean[] withTilts = new boolean[CAPACITY];
+  private final PointerType[] pointerTypes = new PointerType[CAPACITY];
+  private final int[] pointerIds = new int[CAPACITY];
+  // next slot to read (written by the consumer) and next slot to write (written by the producer)
+  private final AtomicLong head;
+  private final AtomicLong tail;
+
+  private final PointerEventBatch eventBatch = new PointerEventBatch(false);
+  private final PointerEventBatch tiltEventBatch = new PointerEventBatch(true);
+  private volatile boolean running = true;
+  @Nullable
+  private volatile LatencyTracker latencyTracker = null;
+
+  // latest move that did not fit in the ring, only accessed by the producer
+  private boolean hasCoalescedMove = false;
+  private float coalescedX;
+  private float coalescedY;
+  private long coalescedT;
+  private float coalescedF;
+  private float coalescedTilt;
+  private float coalescedOrientation;
+  private boolean coalescedWithTilt;
+  private PointerType coalescedPointerType;
+  private int coalescedPointerId;
+  private int coalescedMoveCount = 0;
+
+  /**
+   * @param firstSequence the sequence number of the first queued sample, see {@link #getEnqueuedCount()}.
+   */
+  PointerInputThread(@NonNull Editor editor, long firstSequence)
+  {
+    super("iink-input");
+    this.editor = editor;
+    head = new AtomicLong(firstSequence);
+    tail = new AtomicLong(firstSequence);
+  }
+
+  /**
+   * Sets the tracker notified with {@link LatencyTracker#markConsumed(long)} once queued samples are sent.
+   */
+  void setLatencyTracker(@Nullable LatencyTracker latencyTracker)
+  {
+    this.latencyTracker = latencyTracker;
+  }
+
+  /**
+   * Must only be called from the UI thread.
+   *
+   * @return the sequence number reached once all the samples queued so far are sent to the editor.
+   */
+  long getEnqueuedCount()
+  {
+    // a coalesced move takes the next slot once published
+    return tail.get() + (hasCoalescedMove ? 1 : 0);
+  }
+
+  /**
+   * Queues a sample of a motion event. Must only be called from the UI thread.
+   *
+   * @param historyIndex the index of the historical sample, -1 for the current sample.
+   */
+  void enqueue(int type, @NonNull MotionEvent event, int pointerIndex, int historyIndex, long timeOffset, boolean withTilt,
+               @NonNull PointerType pointerType, int pointerId)
+  {
+    if (historyIndex < 0)
+    {
+      enqueue(type, event.getX(pointerIndex), event.getY(pointerIndex), timeOffset + event.getEventTime(), event.getPressure(pointerIndex),
+          withTilt ? event.getAxisValue(MotionEvent.AXIS_TILT, pointerIndex) : 0,
+          withTilt ? event.getAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex) : 0,
+          withTilt, pointerType, pointerId);
+    }
+    else
+    {
+      enqueue(type, event.getHistoricalX(pointerIndex, historyIndex), event.getHistoricalY(pointerIndex, historyIndex),
+          timeOffset + event.getHistoricalEventTime(historyIndex), event.getHistoricalPressure(pointerIndex, historyIndex),
+          withTilt ? event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, pointerIndex, historyIndex) : 0,
+          withTilt ? event.getHistoricalAxisValue(MotionEvent.AXIS_ORIENTATION, pointerIndex, historyIndex) : 0,
+          withTilt, pointerType, pointerId);
+    }
+  }
+
+  /**
+   * Queues a sample. Must only be called from the UI thread.
+   */
+  void enqueue(int type, float x, float y, long t, float f, float tilt, float orientation, boolean withTilt,
+               @NonNull PointerType pointerType, int pointerId)
+  {
+    if (type == MOVE)
+    {
+      // moves keep their order: the coalesced one goes first
+      if (publishCoalescedMove(RESERVED_SLOTS, 0) && waitForRoom(RESERVED_SLOTS + 1, MOVE_WAIT_NS))
+      {
+        write(type, x, y, t, f, tilt, orientation, withTilt, pointerType, pointerId);
+      }
+      else
+      {
+        if (hasCoalescedMove)
+          ++coalescedMoveCount;
+        hasCoalescedMove = true;
+        coalescedX = x;
+        coalescedY = y;
+        coalescedT = t;
+        coalescedF = f;
+        coalescedTilt = tilt;
+        coalescedOrientation = orientation;
+        coalescedWithTilt = withTilt;
+        coalescedPointerType = pointerType;
+        coalescedPointerId = pointerId;
+      }
+      return;
+    }
+
+    if (!publishCoalescedMove(0, EVENT_WAIT_NS))
+    {
+      hasCoalescedMove = false;
+      ++coalescedMoveCount;
+    }
+    if (!waitForRoom(1, EVENT_WAIT_NS))
+    {
+      Log.e(TAG, "editor not responding, pointer event " + type + " dropped");
+      return;
+    }
+    write(type, x, y, t, f, tilt, orientation, withTilt, pointerType, pointerId);
+  }
+
+  /**
+   * Queues a cancel of the given pointer. Must only be called from the UI thread.
+   */
+  void enqueueCancel(int pointerId)
+  {
+    enqueue(CANCEL, 0, 0, 0, 0, 0, 0, false, PointerType.PEN, pointerId);
+  }
+
+  private void write(int type, float x, float y, long t, float f, float tilt, float orientation, boolean withTilt,
+                     @NonNull PointerType pointerType, int pointerId)
+  {
+    long index = tail.get();
+    int slot = (int) (index & MASK);
+    types[slot] = type;
+    xs[slot] = x;
+    ys[slot] = y;
+    ts[slot] = t;
+    fs[slot] = f;
+    tilts[slot] = tilt;
+    orientations[slot] = orientation;
+    withTilts[slot] = withTilt;
+    pointerTypes[slot] = pointerType;
+    pointerIds[slot] = pointerId;
+    // publishes the slot to the consumer
+    tail.lazySet(index + 1);
+  }
+
+  /**
+   * Waits for the consumer to free slots, at most {@code timeoutNs}.
+   *
+   * @return {@code true} if at least {@code slots} slots are free.
+   */
+  private boolean waitForRoom(int slots, long timeoutNs)
+  {
+    long start = 0;
+    while (CAPACITY - (tail.get() - head.get()) < slots)
+    {
+      LockSupport.unpark(this);
+      long now = System.nanoTime();
+      if (start == 0)
+        start = now;
+      else if (now - start >= timeoutNs)
+        return false;
+      LockSupport.parkNanos(PARK_NS);
+    }
+    return true;
+  }
+
+  /**
+   * @return {@code true} if there is no coalesced move left to publish.
+   */
+  private boolean publishCoalescedMove(int reservedSlots, long timeoutNs)
+  {
+    if (!hasCoalescedMove)
+      return true;
+    if (!waitForRoom(reservedSlots + 1, timeoutNs))
+      return false;
+    write(MOVE, coalescedX, coalescedY, coalescedT, coalescedF, coalescedTilt, coalescedOrientation, coalescedWithTilt,
+        coalescedPointerType, coalescedPointerId);
+    hasCoalescedMove = false;
+    if (coalescedMoveCount > 0)
+    {
+      Log.w(TAG, "editor busy, " + coalescedMoveCount + " moves coalesced");
+      coalescedMoveCount = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Wakes the thread up to send the queued samples, typically once all the samples of a motion event are queued.
+   * Must only be called from the UI thread.
+   */
+  void signal()
+  {
+    publishCoalescedMove(RESERVED_SLOTS, 0);
+    LockSupport.unpark(this);
+  }
+
+  /**
+   * Stops the thread once the queued samples are sent, and waits for it: the editor can be closed afterwards.
+   * Must only be called from the UI thread.
+   */
+  void quit()
+  {
+    publishCoalescedMove(0, EVENT_WAIT_NS);
+    running = false;
+    LockSupport.unpark(this);
+    boolean interrupted = false;
+    while (isAlive())
+    {
+      try
+      {
+        join();
+      }
+      catch (InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  @Override
+  public void run()
+  {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+    while (true)
+    {
+      boolean wasRunning = running;
+      long start = head.get();
+      long end = tail.get();
+      if (start == end)
+      {
+        if (!wasRunning)
+          break;
+        LockSupport.park(this);
+        continue;
+      }
+
+      if (!editor.isClosed())
+        drain(start, end);
+      // releases the slots to the producer
+      head.lazySet(end);
+      LatencyTracker tracker = latencyTracker;
+      if (tracker != null)
+        tracker.markConsumed(end);
+    }
+  }
+
+  private void drain(long start, long end)
+  {
+    long index = start;
+    while (index < end)
+    {
+      int slot = (int) (index & MASK);
+      long next = index + 1;
+      try
+      {
+        switch (types[slot])
+        {
+          case MOVE:
+            next = lastMove(index, end);
+            sendMoves(index, next);
+            break;
+          case DOWN:
+            sendDown(slot);
+            break;
+          case UP:
+            if (withTilts[slot])
+              editor.pointerUp(xs[slot], ys[slot], ts[slot], fs[slot], tilts[slot], orientations[slot], pointerTypes[slot], pointerIds[slot]);
+            else
+              editor.pointerUp(xs[slot], ys[slot], ts[slot], fs[slot], pointerTypes[slot], pointerIds[slot]);
+            break;
+          case CANCEL:
+            editor.pointerCancel(pointerIds[slot]);
+            break;
+          default:
+            break;
+        }
+      }
+      catch (RuntimeException e)
+      {
+        // such an error may be generated by an inconsistent touch sequence, or if the editor was closed meanwhile
+        Log.e(TAG, "bad touch sequence", e);
+      }
+      index = next;
+    }
+  }
+
+  private void sendDown(int slot)
+  {
+    try
+    {
+      pointerDown(slot);
+    }
+    catch (UnsupportedOperationException e)
+    {
+      // Special case: pointerDown already called, discard previous and retry
+      editor.pointerCancel(pointerIds[slot]);
+      pointerDown(slot);
+    }
+  }
+
+  private void pointerDown(int slot)
+  {
+    if (withTilts[slot])
+      editor.pointerDown(xs[slot], ys[slot], ts[slot], fs[slot], tilts[slot], orientations[slot], pointerTypes[slot], pointerIds[slot]);
+    else
+      editor.pointerDown(xs[slot], ys[slot], ts[slot], fs[slot], pointerTypes[slot], pointerIds[slot]);
+  }
+
+  /**
+   * @return the index following the consecutive moves starting at {@code start} with the same tilt information.
+   */
+  private long lastMove(long start, long end)
+  {
+    boolean withTilt = withTilts[(int) (start & MASK)];
+    long last = start;
+    while (last < end && types[(int) (last & MASK)] == MOVE && withTilts[(int) (last & MASK)] == withTilt)
+      ++last;
+    return last;
+  }
+
+  /**
+   * Sends the moves from {@code start} (included) to {@code end} (excluded) as a single batch.
+   */
+  private void sendMoves(long start, long end)
+  {
+    boolean withTilt = withTilts[(int) (start & MASK)];
+    int count = (int) (end - start);
+    PointerEventBatch batch = withTilt ? tiltEventBatch : eventBatch;
+    batch.ensureCapacity(count);
+    for (int i = 0; i < count; ++i)
+    {
+      int slot = (int) ((start + i) & MASK);
+      batch.set(i, PointerEventType.MOVE, xs[slot], ys[slot], ts[slot], fs[slot], tilts[slot], orientations[slot], pointerTypes[slot], pointerIds[slot]);
+    }
+    editor.pointerEvents(batch.obtain(count), true);
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Extrapolates the position from the velocity and the (damped) acceleration of the last three samples,
+ * and the pressure from its last variation. The prediction horizon is bounded to limit overshoot.
+ */
+public class PolynomialMotionPredictor implements IMotionPredictor
+{
+  private static final float DEFAULT_ACCELERATION_DAMPING = 0.5f;
+  private static final long DEFAULT_MAX_HORIZON_MS = 32;
+
+  // last samples, most recent first
+  private final Sample[] samples = { new Sample(), new Sample(), new Sample() };
+  private int sampleCount = 0;
+  private final float accelerationDamping;
+  private final long maxHorizonMs;
+
+  public PolynomialMotionPredictor()
+  {
+    this(DEFAULT_ACCELERATION_DAMPING, DEFAULT_MAX_HORIZON_MS);
+  }
+
+  /**
+   * @param accelerationDamping the ratio of the measured acceleration used for extrapolation, in [0, 1].
+   * @param maxHorizonMs the maximum time predicted ahead of the last sample.
+   */
+  public PolynomialMotionPredictor(float accelerationDamping, long maxHorizonMs)
+  {
+    this.accelerationDamping = accelerationDamping;
+    this.maxHorizonMs = maxHorizonMs;
+  }
+
+  @Override
+  public void reset()
+  {
+    sampleCount = 0;
+  }
+
+  @Override
+  public void addSample(@NonNull Sample sample)
+  {
+    // samples with the same timestamp replace the previous one
+    if (sampleCount == 0 || sample.t > samples[0].t)
+    {
+      Sample oldest = samples[samples.length - 1];
+      System.arraycopy(samples, 0, samples, 1, samples.length - 1);
+      samples[0] = oldest;
+      sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+    samples[0].set(sample);
+  }
+
+  @Override
+  public boolean predict(long t, @NonNull Sample prediction)
+  {
+    if (sampleCount < 2)
+      return false;
+
+    Sample s0 = samples[0];
+    Sample s1 = samples[1];
+    float dt = Math.min(t - s0.t, maxHorizonMs);
+    if (dt <= 0)
+      return false;
+
+    float dt1 = s0.t - s1.t;
+    float vx = (s0.x - s1.x) / dt1;
+    float vy = (s0.y - s1.y) / dt1;
+    float ax = 0;
+    float ay = 0;
+    if (sampleCount > 2)
+    {
+      Sample s2 = samples[2];
+      float dt2 = s1.t - s2.t;
+      float vx1 = (s1.x - s2.x) / dt2;
+      float vy1 = (s1.y - s2.y) / dt2;
+      float dtMid = (dt1 + dt2) / 2;
+      ax = accelerationDamping * (vx - vx1) / dtMid;
+      ay = accelerationDamping * (vy - vy1) / dtMid;
+    }
+
+    float dx = vx * dt + 0.5f * ax * dt * dt;
+    float dy = vy * dt + 0.5f * ay * dt * dt;
+    // a deceleration must not make the prediction go backwards
+    if (dx * vx + dy * vy < 0)
+    {
+      dx = 0;
+      dy = 0;
+    }
+
+    prediction.x = s0.x + dx;
+    prediction.y = s0.y + dy;
+    prediction.t = s0.t + (long) dt;
+    prediction.pressure = Math.max(0, Math.min(1, s0.pressure + (s0.pressure - s1.pressure) / dt1 * dt));
+    prediction.tilt = s0.tilt;
+    prediction.orientation = s0.orientation;
+    return true;
+  }
+}
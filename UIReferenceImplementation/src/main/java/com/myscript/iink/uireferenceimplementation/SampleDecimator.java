@@ -0,0 +1,207 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Drops the move samples that do not change the stroke shape, so that the cost of recognition and capture
+ * rendering depends on the stroke, not on the digitizer rate.
+ * <p>
+ * A sample is kept when, compared to the last kept sample, it moved by at least the minimum distance, changed
+ * direction by more than the maximum angle, or changed pressure by at least the minimum pressure delta.
+ * Pressure peaks are kept too (one sample later, when the pressure decreases). Down and up samples are not
+ * decimated, so the first and last samples of a stroke are always kept.
+ */
+public final class SampleDecimator
+{
+  /** The current sample is kept. */
+  static final int KEEP = 1;
+  /** The previously dropped sample is a pressure peak, to be sent (see {@link #getPeak()}) before the current one. */
+  static final int KEEP_PEAK = 2;
+
+  private static final float MM_PER_INCH = 25.4f;
+  // below this ratio of the minimum distance, direction changes are considered as noise
+  private static final float MIN_ANGLE_DISTANCE_RATIO = 0.25f;
+
+  static final class Sample
+  {
+    float x;
+    float y;
+    long t;
+    float f;
+    float tilt;
+    float orientation;
+
+    void set(float x, float y, long t, float f, float tilt, float orientation)
+    {
+      this.x = x;
+      this.y = y;
+      this.t = t;
+      this.f = f;
+      this.tilt = tilt;
+      this.orientation = orientation;
+    }
+  }
+
+  private final float minDistanceMm;
+  private final float minCosAngle;
+  private final float minPressureDelta;
+
+  private float mmPerPixelX = 1.0f;
+  private float mmPerPixelY = 1.0f;
+  private int pointerId = -1;
+  private final Sample lastKept = new Sample();
+  private final Sample dropped = new Sample();
+  private final Sample peak = new Sample();
+  private boolean hasDropped = false;
+  // direction of the last kept segment (in mm, normalized)
+  private boolean hasDirection = false;
+  private float directionX;
+  private float directionY;
+
+  private long receivedCount = 0;
+  private long keptCount = 0;
+
+  /**
+   * @param minDistanceMm the distance (in mm on screen) from the last kept sample above which a sample is kept.
+   * @param maxAngleDegrees the change of direction above which a sample is kept.
+   * @param minPressureDelta the change of pressure (in [0, 1]) above which a sample is kept.
+   */
+  public SampleDecimator(float minDistanceMm, float maxAngleDegrees, float minPressureDelta)
+  {
+    this.minDistanceMm = minDistanceMm;
+    this.minCosAngle = (float) Math.cos(Math.toRadians(maxAngleDegrees));
+    this.minPressureDelta = minPressureDelta;
+  }
+
+  /**
+   * Starts a stroke from its down sample.
+   *
+   * @param dpiX the horizontal resolution of the screen, typically {@code Renderer.getDpiX()}.
+   * @param dpiY the vertical resolution of the screen, typically {@code Renderer.getDpiY()}.
+   */
+  synchronized void startStroke(int pointerId, float dpiX, float dpiY, float x, float y, long t, float f)
+  {
+    this.pointerId = pointerId;
+    mmPerPixelX = MM_PER_INCH / dpiX;
+    mmPerPixelY = MM_PER_INCH / dpiY;
+    lastKept.set(x, y, t, f, 0, 0);
+    hasDropped = false;
+    hasDirection = false;
+  }
+
+  /**
+   * Decides whether a move sample of the current stroke is kept. Samples of other pointers are always kept.
+   *
+   * @return a combination of {@link #KEEP} and {@link #KEEP_PEAK}.
+   */
+  synchronized int add(int pointerId, float x, float y, long t, float f, float tilt, float orientation)
+  {
+    ++receivedCount;
+    if (pointerId != this.pointerId)
+    {
+      ++keptCount;
+      return KEEP;
+    }
+
+    int result = 0;
+    float peakDelta = minPressureDelta / 2;
+    if (hasDropped && dropped.f > lastKept.f + peakDelta && dropped.f > f + peakDelta)
+    {
+      peak.set(dropped.x, dropped.y, dropped.t, dropped.f, dropped.tilt, dropped.orientation);
+      keep(peak);
+      result |= KEEP_PEAK;
+    }
+    hasDropped = false;
+
+    if (isSignificant(x, y, f))
+    {
+      dropped.set(x, y, t, f, tilt, orientation);
+      keep(dropped);
+      result |= KEEP;
+    }
+    else
+    {
+      dropped.set(x, y, t, f, tilt, orientation);
+      hasDropped = true;
+    }
+    return result;
+  }
+
+  /**
+   * @return the pressure peak to send when {@link #add} returned {@link #KEEP_PEAK}, valid until the next call.
+   */
+  @NonNull
+  Sample getPeak()
+  {
+    return peak;
+  }
+
+  private boolean isSignificant(float x, float y, float f)
+  {
+    if (Math.abs(f - lastKept.f) >= minPressureDelta)
+      return true;
+
+    float dx = (x - lastKept.x) * mmPerPixelX;
+    float dy = (y - lastKept.y) * mmPerPixelY;
+    float distance = (float) Math.hypot(dx, dy);
+    if (distance >= minDistanceMm)
+      return true;
+
+    if (hasDirection && distance >= MIN_ANGLE_DISTANCE_RATIO * minDistanceMm)
+    {
+      float cosAngle = (dx * directionX + dy * directionY) / distance;
+      return cosAngle < minCosAngle;
+    }
+    return false;
+  }
+
+  private void keep(@NonNull Sample sample)
+  {
+    float dx = (sample.x - lastKept.x) * mmPerPixelX;
+    float dy = (sample.y - lastKept.y) * mmPerPixelY;
+    float distance = (float) Math.hypot(dx, dy);
+    if (distance > 0)
+    {
+      directionX = dx / distance;
+      directionY = dy / distance;
+      hasDirection = true;
+    }
+    lastKept.set(sample.x, sample.y, sample.t, sample.f, sample.tilt, sample.orientation);
+    ++keptCount;
+  }
+
+  public synchronized long getReceivedCount()
+  {
+    return receivedCount;
+  }
+
+  public synchronized long getKeptCount()
+  {
+    return keptCount;
+  }
+
+  /**
+   * @return the ratio of dropped samples, in [0, 1].
+   */
+  public synchronized float getReductionRatio()
+  {
+    return receivedCount > 0 ? 1.0f - (float) keptCount / receivedCount : 0.0f;
+  }
+
+  public synchronized void resetCounts()
+  {
+    receivedCount = 0;
+    keptCount = 0;
+  }
+
+  @NonNull
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(Locale.US, "samples: %d, kept: %d, reduction: %.0f%%", receivedCount, keptCount, 100 * getReductionRatio());
+  }
+}
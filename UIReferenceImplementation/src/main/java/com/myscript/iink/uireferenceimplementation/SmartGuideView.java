@@ -46,8 +46,16 @@
 import com.myscript.iink.graphics.Rectangle;
 import com.myscript.iink.graphics.Transform;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SmartGuideView extends LinearLayout implements IEditorListener, IRendererListener, View.OnClickListener
 {
@@ -62,6 +70,7 @@ public class SmartGuideView extends LinearLayout implements IEditorListener, IRe
   private static final int SMART_GUIDE_FADE_OUT_DELAY_WRITE_DEFAULT = 0;
   private static final int SMART_GUIDE_FADE_OUT_DELAY_OTHER_DEFAULT = 0;
   private static final int SMART_GUIDE_HIGHLIGHT_REMOVAL_DELAY_DEFAULT = 2000;
+  private static final int MAX_RECYCLED_WORD_VIEWS = 32;
 
   enum UpdateCause
   {
@@ -92,6 +101,14 @@ public class SmartGuideView extends LinearLayout implements IEditorListener, IRe
   @Nullable
   private Editor editor;
 
+  @Nullable
+  private JiixCache jiixCache;
+  // closed with the guide when not shared
+  private boolean isJiixCacheOwned = false;
+  // smallest export providing the words displayed by the guide
+  @Nullable
+  private ParameterSet wordsExportParams;
+  // full words export, round-tripped when a candidate is chosen
   @Nullable
   private ParameterSet exportParams;
   @Nullable
@@ -102,8 +119,22 @@ public class SmartGuideView extends LinearLayout implements IEditorListener, IRe
   @Nullable
   private ContentBlock selectedBlock;
 
+  // words of the last exported block, only written by the export worker
+  @Nullable
+  private volatile SmartGuideWord[] words;
+  @Nullable
+  private String wordsBlockId;
+
+  // word updates are exported and parsed by a worker, only the latest request is processed and displayed
+  @Nullable
+  private volatile ExecutorService exportExecutor;
+  private final AtomicReference<WordsRequest> pendingWordsRequest = new AtomicReference<>();
+  private final AtomicLong wordsSequence = new AtomicLong(0);
+  // words bound to the word views, by child index, only used on the UI thread
   @Nullable
-  private SmartGuideWord[] words;
+  private SmartGuideWord[] displayedWords;
+  // word views removed from the stack, reused for the next inserted words
+  private final ArrayList<SmartGuideWordView> recycledWordViews = new ArrayList<>();
 
   private float density;
 
@@ -131,11 +162,34 @@ public SmartGuideWord(JiixDefinitions.Word word)
     }
   }
 
+  private static class WordsRequest
+  {
+    private final long sequence;
+    @NonNull
+    private final String blockId;
+    @NonNull
+    private final Rectangle rectangle;
+    private final float paddingLeft;
+    private final float paddingRight;
+    @NonNull
+    private final UpdateCause cause;
+
+    private WordsRequest(long sequence, @NonNull String blockId, @NonNull Rectangle rectangle, float paddingLeft, float paddingRight,
+                         @NonNull UpdateCause cause)
+    {
+      this.sequence = sequence;
+      this.blockId = blockId;
+      this.rectangle = rectangle;
+      this.paddingLeft = paddingLeft;
+      this.paddingRight = paddingRight;
+      this.cause = cause;
+    }
+  }
+
   private class SmartGuideWordView extends AppCompatTextView implements View.OnClickListener
   {
+    // the word last bound, its label is displayed (the current word is in displayedWords)
     private SmartGuideWord word;
-    private int index;
-    private final Handler removeHighlightTimerHandler;
     private final Runnable removeHighlightTimerRunnable;
 
     public SmartGuideWordView(Context context)
@@ -153,42 +207,58 @@ public SmartGuideWordView(Context context, AttributeSet attrs, int defStyleAttr)
       super(context, attrs, defStyleAttr);
       setOnClickListener(this);
       word = null;
-      index = -1;
 
-      removeHighlightTimerHandler = new Handler(Looper.myLooper());
+      Resources resources = getResources();
+      float textSizeInPixels = resources.getDimension(R.dimen.smart_guide_text_size);
+      int textSize = (int) (textSizeInPixels / density);
+      setTextSize(textSize);
+
       removeHighlightTimerRunnable = () -> setTextColor(ResourcesCompat.getColor(getResources(), R.color.word_gray, context.getTheme()));
     }
 
-    private void init(SmartGuideWord word, int index)
+    /**
+     * Binds a word to the view, the text is only set (and the view re-measured) when the label changed.
+     */
+    private void init(SmartGuideWord word)
     {
+      boolean isSameLabel = hasLabel(word.label);
       this.word = word;
-      this.index = index;
-      Resources resources = getResources();
-      float textSizeInPixels = resources.getDimension(R.dimen.smart_guide_text_size);
-      int textSize = (int) (textSizeInPixels / density);
-      setTextSize(textSize);
-      setText(word.label.equals("\n") ? " " : word.label);
+      if (!isSameLabel)
+        setText(word.label.equals("\n") ? " " : word.label);
+      removeCallbacks(removeHighlightTimerRunnable);
       if (word.modified)
       {
         setTextColor(Color.BLACK);
-        removeHighlightTimerHandler.postDelayed(removeHighlightTimerRunnable, removeHighlightDelay);
+        postDelayed(removeHighlightTimerRunnable, removeHighlightDelay);
       }
       else
       {
-        setTextColor(ResourcesCompat.getColor(resources, R.color.word_gray, getContext().getTheme()));
+        setTextColor(ResourcesCompat.getColor(getResources(), R.color.word_gray, getContext().getTheme()));
       }
     }
 
+    private boolean hasLabel(String label)
+    {
+      return word != null && word.label.equals(label);
+    }
+
+    private void recycle()
+    {
+      removeCallbacks(removeHighlightTimerRunnable);
+      word = null;
+    }
+
     private boolean updateWord(int index, String label)
     {
       Editor editor = SmartGuideView.this.editor;
-      if (editor == null) return false;
+      JiixCache jiixCache = SmartGuideView.this.jiixCache;
+      if (editor == null || jiixCache == null) return false;
       ContentBlock block = getBlock();
       if (block == null) return false;
       String jiixString = null;
       try
       {
-        jiixString = editor.export_(block, MimeType.JIIX, exportParams);
+        jiixString = jiixCache.getJiix(block.getId(), exportParams);
       }
       catch (Exception e)
       {
@@ -220,6 +290,15 @@ public void onClick(View v)
     {
       fadeOutTimerHandler.removeCallbacks(fadeOutTimerRunnable);
 
+      // unchanged views are not re-bound: resolve the current word (candidates, index) at click time
+      SmartGuideWord[] displayedWords = SmartGuideView.this.displayedWords;
+      ViewGroup parent = (ViewGroup) getParent();
+      final int index = parent != null ? parent.indexOfChild(this) : -1;
+      if (displayedWords == null || index < 0 || index >= displayedWords.length)
+        return;
+      final SmartGuideWord word = displayedWords[index];
+      this.word = word;
+
       if (!TextUtils.isGraphic(word.label))
         return;
 
@@ -294,32 +373,46 @@ public void setTypeface(@Nullable Typeface wordViewTypeface)
         ((TextView) child).setTypeface(wordViewTypeface);
       }
     }
+    for (SmartGuideWordView recycledWordView : recycledWordViews)
+      recycledWordView.setTypeface(wordViewTypeface);
   }
 
   public void setEditor(@Nullable Editor editor)
+  {
+    setEditor(editor, null);
+  }
+
+  /**
+   * @param editor    the editor, {@code null} to detach the guide.
+   * @param jiixCache the JIIX exports cache of the editor shared with other consumers (not closed by the guide),
+   *                  {@code null} to use a cache of the guide. A shared cache must be created before calling this
+   *                  method, so that it is invalidated before the guide gets the content changes.
+   */
+  public void setEditor(@Nullable Editor editor, @Nullable JiixCache jiixCache)
   {
     if (this.editor != null && !this.editor.isClosed())
     {
       this.editor.removeListener(this);
       this.editor.getRenderer().removeListener(this);
     }
+    if (this.jiixCache != null && isJiixCacheOwned)
+      this.jiixCache.close();
+    this.jiixCache = null;
+    isJiixCacheOwned = false;
     this.editor = editor;
     if (editor != null)
     {
+      // registered first, see JiixCache
+      isJiixCacheOwned = jiixCache == null;
+      this.jiixCache = isJiixCacheOwned ? new JiixCache(editor) : jiixCache;
       editor.addListener(this);
       editor.getRenderer().addListener(this);
       Engine engine = editor.getEngine();
 
-      exportParams = engine.createParameterSet();
-      exportParams.setBoolean("export.jiix.bounding-box", false);
-      exportParams.setBoolean("export.jiix.glyphs", false);
-      exportParams.setBoolean("export.jiix.primitives", false);
-      exportParams.setBoolean("export.jiix.strokes", false);
-      exportParams.setBoolean("export.jiix.text.chars", false);
-      exportParams.setBoolean("export.jiix.text.lines", false);
-      exportParams.setBoolean("export.jiix.text.spans", false);
-      exportParams.setBoolean("export.jiix.text.structure", false);
-      exportParams.setBoolean("export.jiix.text.words", true);
+      exportParams = createWordsExportParams(engine);
+      wordsExportParams = createWordsExportParams(engine);
+      wordsExportParams.setBoolean("export.jiix.style", false);
+      wordsExportParams.setBoolean("export.jiix.ranges", false);
 
       importParams = engine.createParameterSet();
       importParams.setString("diagram.import.jiix.action", "update");
@@ -335,6 +428,22 @@ public void setEditor(@Nullable Editor editor)
     }
   }
 
+  @NonNull
+  private static ParameterSet createWordsExportParams(@NonNull Engine engine)
+  {
+    ParameterSet params = engine.createParameterSet();
+    params.setBoolean("export.jiix.bounding-box", false);
+    params.setBoolean("export.jiix.glyphs", false);
+    params.setBoolean("export.jiix.primitives", false);
+    params.setBoolean("export.jiix.strokes", false);
+    params.setBoolean("export.jiix.text.chars", false);
+    params.setBoolean("export.jiix.text.lines", false);
+    params.setBoolean("export.jiix.text.spans", false);
+    params.setBoolean("export.jiix.text.structure", false);
+    params.setBoolean("export.jiix.text.words", true);
+    return params;
+  }
+
   public void setMenuListener(@Nullable MenuListener moreMenuListener)
   {
     this.moreMenuListener = moreMenuListener;
@@ -354,11 +463,25 @@ protected void onAttachedToWindow()
 
     fadeOutTimerHandler = new Handler(Looper.myLooper());
     fadeOutTimerRunnable = () -> setVisibility(View.INVISIBLE);
+
+    exportExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "iink-smartguide");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
   @Override
   protected void onDetachedFromWindow()
   {
+    // pending word updates are obsolete
+    wordsSequence.incrementAndGet();
+    pendingWordsRequest.set(null);
+    ExecutorService executor = exportExecutor;
+    exportExecutor = null;
+    if (executor != null)
+      executor.shutdown();
+
     if (selectedBlock != null)
     {
       selectedBlock.close();
@@ -528,232 +651,316 @@ private void update(@Nullable ContentBlock block, final UpdateCause cause)
     Editor editor = SmartGuideView.this.editor;
     if (isAttachedToWindow() && editor != null && block != null && block.isValid() && block.getType().equals("Text"))
     {
-      Gson gson = new Gson();
       // Update size and position
       Rectangle rectangle = block.getBox();
-      JiixDefinitions.Padding padding = null;
-      if (block.getAttributes().length() > 0)
+      JiixDefinitions.Padding padding = new JiixDefinitions.Padding();
+      String attributes = block.getAttributes();
+      if (attributes.length() > 0)
       {
         try
         {
-          padding = gson.fromJson(block.getAttributes(), JiixDefinitions.Padding.class);
+          JiixWordReader.readPadding(attributes, padding);
         }
-        catch (JsonSyntaxException e)
+        catch (IOException e)
         {
           Log.e(TAG, "Failed to parse attributes as json", e);
         }
       }
-      final float paddingLeft = padding != null ? padding.left : 0.0f;
-      final float paddingRight = padding != null ? padding.right : 0.0f;
+      final float paddingLeft = padding.left;
+      final float paddingRight = padding.right;
 
       // Update words
-      final SmartGuideWord[] updatedWords;
+      String blockId = block.getId();
       ContentBlock currentBlock = getBlock();
-      boolean isSameActiveBlock = currentBlock != null && currentBlock.getId().equals(block.getId());
+      boolean isSameActiveBlock = currentBlock != null && currentBlock.getId().equals(blockId);
       if (cause != UpdateCause.EDIT && isSameActiveBlock)
       {
         // Nothing changed so keep same words
-        updatedWords = words;
+        final boolean isInDiagram = blockId.startsWith("diagram/");
+        post(() -> show(rectangle, paddingLeft, paddingRight, null, cause, isInDiagram));
       }
       else
       {
-        // Build new word list from JIIX export
-        String jiixString;
-        try
-        {
-          jiixString = editor.export_(block, MimeType.JIIX, exportParams);
-        }
-        catch (Exception e)
-        {
-          return; // when processing is ongoing, export may fail: ignore
-        }
-        ArrayList<SmartGuideWord> smartGuideWords = new ArrayList<>();
-        try
-        {
-          JiixDefinitions.Result result = gson.fromJson(jiixString, JiixDefinitions.Result.class);
-          if (result != null && result.words != null)
-          {
-            int count = result.words.length;
-            for (int i = 0; i < count; ++i)
-              smartGuideWords.add(new SmartGuideWord(result.words[i]));
-          }
-        }
-        catch (JsonSyntaxException e)
-        {
-          Log.e(TAG, "Failed to parse jiix string as json words", e);
-        }
-        updatedWords = new SmartGuideWord[smartGuideWords.size()];
-        smartGuideWords.toArray(updatedWords);
-
-        // Possibly compute difference with previous state
-        if (isSameActiveBlock && words != null)
-        {
-          computeModificationOfWords(updatedWords, words);
-        }
-        else if (cause == UpdateCause.EDIT)
-        {
-          for (SmartGuideWord updatedWord : updatedWords)
-          {
-            updatedWord.modified = true;
-          }
-        }
+        // Build new word list from JIIX export, off the editor callback
+        requestWords(new WordsRequest(wordsSequence.incrementAndGet(), blockId, rectangle, paddingLeft, paddingRight, cause));
       }
+    }
+    else
+    {
+      // pending word updates are obsolete
+      wordsSequence.incrementAndGet();
+      fadeOutTimerHandler.removeCallbacks(fadeOutTimerRunnable);
 
-      final boolean updateWords = words != updatedWords;
-      final boolean isInDiagram = block.getId().startsWith("diagram/");
-
-      post(() -> {
-        if (!isAttachedToWindow())
-          return;
-        Editor editor_ = SmartGuideView.this.editor;
-        if (editor_ == null || editor_.isClosed())
-          return;
-        Renderer renderer_ = editor_.getRenderer();
-        if (renderer_ == null || renderer_.isClosed())
-          return;
-
-        Transform transform = renderer_.getViewTransform();
-        Point left = transform.apply(rectangle.x + paddingLeft, rectangle.y);
-        Point right = transform.apply(rectangle.x + rectangle.width - paddingRight, rectangle.y);
-
-        float x = left.x;
-        float y = left.y;
-        float width = right.x - left.x;
-
-        final HorizontalScrollView scrollView= findViewById(R.id.smart_guide_scroll_view);
-        View moreView = findViewById(R.id.smart_guide_more_view);
-        if (scrollView == null || moreView == null)
-        {
-          Log.e(TAG, "Failed to access views");
-          return;
-        }
+      post(() -> setVisibility(View.INVISIBLE));
+    }
+  }
+
+  private void requestWords(@NonNull WordsRequest request)
+  {
+    pendingWordsRequest.set(request);
+    ExecutorService executor = exportExecutor;
+    if (executor == null)
+      return;
+    try
+    {
+      executor.execute(this::processWordsRequest);
+    }
+    catch (RejectedExecutionException e)
+    {
+      // detached meanwhile: no-op
+    }
+  }
+
+  /**
+   * Exports and parses the words of the latest request, on the export worker.
+   */
+  private void processWordsRequest()
+  {
+    // requests queued meanwhile were replaced by the latest one
+    WordsRequest request = pendingWordsRequest.getAndSet(null);
+    if (request == null || request.sequence != wordsSequence.get())
+      return;
+    Editor editor = SmartGuideView.this.editor;
+    JiixCache jiixCache = SmartGuideView.this.jiixCache;
+    if (editor == null || editor.isClosed() || jiixCache == null)
+      return;
 
-        final FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) getLayoutParams();
-        layoutParams.leftMargin = (int) x;
-        layoutParams.topMargin = (int) y - getHeight();
-        final LinearLayout.LayoutParams scrollViewLayoutParams = (LinearLayout.LayoutParams) scrollView.getLayoutParams();
-        scrollViewLayoutParams.width = (int) width - moreView.getWidth();
+    List<JiixDefinitions.Word> jiixWords;
+    try
+    {
+      jiixWords = jiixCache.getWords(request.blockId, wordsExportParams);
+      if (jiixWords == null)
+        return;
+    }
+    catch (IOException e)
+    {
+      Log.e(TAG, "Failed to parse jiix string as json words", e);
+      jiixWords = Collections.emptyList();
+    }
+    catch (Exception e)
+    {
+      return; // when processing is ongoing, export may fail: ignore
+    }
+    final SmartGuideWord[] updatedWords = new SmartGuideWord[jiixWords.size()];
+    for (int i = 0; i < updatedWords.length; ++i)
+      updatedWords[i] = new SmartGuideWord(jiixWords.get(i));
 
-        setLayoutParams(layoutParams);
-        scrollView.setLayoutParams(scrollViewLayoutParams);
+    // Possibly compute difference with previous state
+    SmartGuideWord[] previousWords = words;
+    if (previousWords != null && request.blockId.equals(wordsBlockId))
+    {
+      computeModificationOfWords(updatedWords, previousWords);
+    }
+    else if (request.cause == UpdateCause.EDIT)
+    {
+      for (SmartGuideWord updatedWord : updatedWords)
+      {
+        updatedWord.modified = true;
+      }
+    }
+    words = updatedWords;
+    wordsBlockId = request.blockId;
+
+    final boolean isInDiagram = request.blockId.startsWith("diagram/");
+    post(() -> {
+      // only display the newest result
+      if (request.sequence == wordsSequence.get())
+        show(request.rectangle, request.paddingLeft, request.paddingRight, updatedWords, request.cause, isInDiagram);
+    });
+  }
 
-        if (updateWords)
-        {
-          final LinearLayout stackView = findViewById(R.id.smart_guide_stack_view);
-          stackView.removeAllViews();
-          SmartGuideWordView lastModifiedWordView_ = null;
-          for (int i = 0; i < updatedWords.length; ++i)
-          {
-            SmartGuideWordView smartGuideWordView = new SmartGuideWordView(getContext());
-            smartGuideWordView.setTypeface(wordViewTypeface);
-            smartGuideWordView.init(updatedWords[i], i);
-            stackView.addView(smartGuideWordView);
-            if (smartGuideWordView.word.modified)
-              lastModifiedWordView_ = smartGuideWordView;
-          }
-          if (lastModifiedWordView_ != null)
-          {
-            final SmartGuideWordView lastModifiedWordView = lastModifiedWordView_;
-            scrollView.post(() -> {
-              Rect rect = new Rect();
-              lastModifiedWordView.getHitRect(rect); // coordinates of lastModifiedWordView relative to its parent stackView
-              scrollView.requestChildRectangleOnScreen(stackView, rect, false);
-            });
-          }
-        }
+  /**
+   * Moves the guide above the block and displays its words, on the UI thread.
+   *
+   * @param updatedWords the new words, {@code null} to keep the displayed ones.
+   */
+  private void show(@NonNull Rectangle rectangle, float paddingLeft, float paddingRight, @Nullable SmartGuideWord[] updatedWords,
+                    @NonNull UpdateCause cause, boolean isInDiagram)
+  {
+    if (!isAttachedToWindow())
+      return;
+    Editor editor_ = SmartGuideView.this.editor;
+    if (editor_ == null || editor_.isClosed())
+      return;
+    Renderer renderer_ = editor_.getRenderer();
+    if (renderer_ == null || renderer_.isClosed())
+      return;
 
-        int delay;
-        if (cause == UpdateCause.EDIT)
-        {
-          if (isInDiagram)
-            delay = fadeOutWriteInDiagramDelay;
-          else
-            delay = fadeOutWriteDelay;
-        }
-        else
-          delay = fadeOutOtherDelay;
+    Transform transform = renderer_.getViewTransform();
+    Point left = transform.apply(rectangle.x + paddingLeft, rectangle.y);
+    Point right = transform.apply(rectangle.x + rectangle.width - paddingRight, rectangle.y);
 
-        if (cause != UpdateCause.VIEW)
-        {
-          fadeOutTimerHandler.removeCallbacks(fadeOutTimerRunnable);
+    float x = left.x;
+    float y = left.y;
+    float width = right.x - left.x;
 
-          if (delay > 0)
-            fadeOutTimerHandler.postDelayed(fadeOutTimerRunnable, delay);
+    final HorizontalScrollView scrollView= findViewById(R.id.smart_guide_scroll_view);
+    View moreView = findViewById(R.id.smart_guide_more_view);
+    if (scrollView == null || moreView == null)
+    {
+      Log.e(TAG, "Failed to access views");
+      return;
+    }
 
-          setVisibility(View.VISIBLE);
-        }
-      });
+    float top = y - getHeight();
+    int scrollViewWidth = (int) width - moreView.getWidth();
+    final FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) getLayoutParams();
+    final LinearLayout.LayoutParams scrollViewLayoutParams = (LinearLayout.LayoutParams) scrollView.getLayoutParams();
+    // the measured width also differs when the previous layout did not fit (e.g. before the "more" view was measured,
+    // or when constrained by the parent), translating would keep the guide clipped
+    if (scrollViewLayoutParams.width != scrollViewWidth || getMeasuredWidth() != (int) width)
+    {
+      // the block width changed: lay the guide out again at its new position
+      layoutParams.leftMargin = (int) x;
+      layoutParams.topMargin = (int) top;
+      scrollViewLayoutParams.width = scrollViewWidth;
+      setTranslationX(0);
+      setTranslationY(0);
+
+      setLayoutParams(layoutParams);
+      scrollView.setLayoutParams(scrollViewLayoutParams);
+    }
+    else
+    {
+      // same size (e.g. scroll): follow the block without a layout pass
+      setTranslationX(x - layoutParams.leftMargin);
+      setTranslationY(top - layoutParams.topMargin);
+    }
 
-      words = updatedWords;
+    if (updatedWords != null)
+    {
+      final LinearLayout stackView = findViewById(R.id.smart_guide_stack_view);
+      SmartGuideWordView lastModifiedWordView_ = bindWords(stackView, updatedWords);
+      if (lastModifiedWordView_ != null)
+      {
+        final SmartGuideWordView lastModifiedWordView = lastModifiedWordView_;
+        scrollView.post(() -> {
+          Rect rect = new Rect();
+          lastModifiedWordView.getHitRect(rect); // coordinates of lastModifiedWordView relative to its parent stackView
+          scrollView.requestChildRectangleOnScreen(stackView, rect, false);
+        });
+      }
+    }
+
+    int delay;
+    if (cause == UpdateCause.EDIT)
+    {
+      if (isInDiagram)
+        delay = fadeOutWriteInDiagramDelay;
+      else
+        delay = fadeOutWriteDelay;
     }
     else
+      delay = fadeOutOtherDelay;
+
+    if (cause != UpdateCause.VIEW)
     {
       fadeOutTimerHandler.removeCallbacks(fadeOutTimerRunnable);
 
-      post(() -> setVisibility(View.INVISIBLE));
+      if (delay > 0)
+        fadeOutTimerHandler.postDelayed(fadeOutTimerRunnable, delay);
+
+      setVisibility(View.VISIBLE);
     }
   }
 
-  private void computeModificationOfWords(SmartGuideWord[] words, SmartGuideWord[] oldWords)
+  /**
+   * Updates the word views with the new words. The views of the unchanged leading and trailing words are kept as is,
+   * only the changed range is re-bound, and views of removed words are recycled for the next insertions, so the
+   * layout cost of an edit depends on the number of changed words, not on the length of the block.
+   *
+   * @return the view of the last modified word, if any.
+   */
+  @Nullable
+  private SmartGuideWordView bindWords(@NonNull LinearLayout stackView, @NonNull SmartGuideWord[] updatedWords)
   {
-    int len1 = oldWords.length;
-    int len2 = words.length;
-
-    int[][] d = new int[len1 + 1][len2 + 1];
-    int i;
-    int j;
-
-    // Levenshtein distance algorithm at word level
-    d[0][0] = 0;
-    for (i = 1; i <= len1; ++i)
-      d[i][0] = i;
-    for (i = 1; i <= len2; ++i)
-      d[0][i] = i;
-
-    for (i = 1; i <= len1; ++i)
+    // the layout placeholder is not a word view, it is removed on first bind
+    if (displayedWords == null)
     {
-      for (j = 1; j <= len2; ++j)
+      for (int i = stackView.getChildCount() - 1; i >= 0; --i)
       {
-        int d1 = d[i - 1][j] + 1;
-        int d2 = d[i][j - 1] + 1;
-        int d3 = d[i - 1][j - 1] + (oldWords[i - 1].label.equals(words[j - 1].label) ? 0 : 1);
-        d[i][j] = Math.min(Math.min(d1, d2), d3);
+        if (!(stackView.getChildAt(i) instanceof SmartGuideWordView))
+          stackView.removeViewAt(i);
       }
     }
 
-    // Backward traversal
-    for (j = 0; j < len2; ++j)
-      words[j].modified = true;
+    int oldCount = stackView.getChildCount();
+    int newCount = updatedWords.length;
 
-    if ((len1 > 0) && (len2 > 0))
-    {
-      i = len1;
-      j = len2;
+    int prefix = 0;
+    while (prefix < oldCount && prefix < newCount && getWordView(stackView, prefix).hasLabel(updatedWords[prefix].label))
+      ++prefix;
+    int suffix = 0;
+    while (suffix < oldCount - prefix && suffix < newCount - prefix
+        && getWordView(stackView, oldCount - 1 - suffix).hasLabel(updatedWords[newCount - 1 - suffix].label))
+      ++suffix;
 
-      while (j > 0)
-      {
-        int d01 = d[i][j - 1];
-        int d11 = (i > 0) ? d[i - 1][j - 1] : -1;
-        int d10 = (i > 0) ? d[i - 1][j] : -1;
+    int oldChangedCount = oldCount - prefix - suffix;
+    int newChangedCount = newCount - prefix - suffix;
+    int reboundCount = Math.min(oldChangedCount, newChangedCount);
 
-        if ((d11 >= 0) && (d11 <= d10) && (d11 <= d01))
-        {
-          --i;
-          --j;
-        }
-        else if ((d10 >= 0) && (d10 <= d11) && (d10 <= d01))
-        {
-          --i;
-        }
-        else //if ( (d01 <= d11) && (d01 <= d10) )
-        {
-          --j;
-        }
+    if (oldChangedCount > reboundCount)
+    {
+      int start = prefix + reboundCount;
+      int count = oldChangedCount - reboundCount;
+      for (int i = start; i < start + count; ++i)
+        recycleWordView(getWordView(stackView, i));
+      stackView.removeViews(start, count);
+    }
+    for (int i = reboundCount; i < newChangedCount; ++i)
+      stackView.addView(obtainWordView(), prefix + i);
 
-        if ((i < len1) && (j < len2))
-          words[j].modified = !oldWords[i].label.equals(words[j].label);
-      }
+    displayedWords = updatedWords;
+    // unchanged words are neither re-bound nor highlighted, only the changed range is
+    SmartGuideWordView lastModifiedWordView = null;
+    for (int i = prefix; i < prefix + newChangedCount; ++i)
+    {
+      SmartGuideWordView wordView = getWordView(stackView, i);
+      wordView.init(updatedWords[i]);
+      if (updatedWords[i].modified)
+        lastModifiedWordView = wordView;
     }
+    return lastModifiedWordView;
+  }
+
+  @NonNull
+  private static SmartGuideWordView getWordView(@NonNull ViewGroup stackView, int index)
+  {
+    return (SmartGuideWordView) stackView.getChildAt(index);
+  }
+
+  @NonNull
+  private SmartGuideWordView obtainWordView()
+  {
+    int count = recycledWordViews.size();
+    SmartGuideWordView wordView = count > 0 ? recycledWordViews.remove(count - 1) : new SmartGuideWordView(getContext());
+    wordView.setTypeface(wordViewTypeface);
+    return wordView;
+  }
+
+  private void recycleWordView(@NonNull SmartGuideWordView wordView)
+  {
+    wordView.recycle();
+    if (recycledWordViews.size() < MAX_RECYCLED_WORD_VIEWS)
+      recycledWordViews.add(wordView);
+  }
+
+  /**
+   * Marks as modified the words that are not part of the longest common subsequence with the previous words.
+   */
+  private static void computeModificationOfWords(SmartGuideWord[] words, SmartGuideWord[] oldWords)
+  {
+    String[] labels = new String[words.length];
+    for (int j = 0; j < words.length; ++j)
+      labels[j] = words[j].label;
+    String[] oldLabels = new String[oldWords.length];
+    for (int i = 0; i < oldWords.length; ++i)
+      oldLabels[i] = oldWords[i].label;
+
+    boolean[] matched = new boolean[words.length];
+    WordDiff.matchWords(oldLabels, labels, matched);
+    for (int j = 0; j < words.length; ++j)
+      words[j].modified = !matched[j];
   }
 
   /**
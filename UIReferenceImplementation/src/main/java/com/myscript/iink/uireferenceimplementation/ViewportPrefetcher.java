@@ -0,0 +1,391 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.myscript.iink.Renderer;
+import com.myscript.iink.graphics.Point;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Renders the model layer of an area larger than the viewport (viewport extended by a margin on each side)
+ * into an offscreen surface, using idle time of the UI thread.
+ * As long as the content does not change, scrolling within the margin is composited from the prepared surface
+ * instead of rendering the model again.
+ * <p>
+ * All methods must be called from the UI thread, except {@link #invalidateContent()}.
+ */
+public class ViewportPrefetcher implements MessageQueue.IdleHandler
+{
+  public static final int DEFAULT_MAX_MEMORY_BYTES = 32 * 1024 * 1024;
+
+  private static final String TAG = "ViewportPrefetcher";
+
+  private static final int BYTES_PER_PIXEL = 4;
+  private static final int MIN_STRIP_HEIGHT = 32;
+  private static final int INITIAL_STRIP_HEIGHT = 128;
+  private static final float NS_IN_A_MS = 1000000f;
+
+  private static class Surface
+  {
+    @Nullable
+    private Bitmap bitmap = null;
+    @Nullable
+    private android.graphics.Canvas sysCanvas = null;
+    private float offsetX;
+    private float offsetY;
+    private float scale;
+    private int margin;
+    private int generation;
+
+    private boolean ensureSize(int width, int height)
+    {
+      if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height)
+        return true;
+      recycle();
+      try
+      {
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      }
+      catch (Exception | OutOfMemoryError e)
+      {
+        return false;
+      }
+      sysCanvas = new android.graphics.Canvas(bitmap);
+      return true;
+    }
+
+    private void recycle()
+    {
+      if (bitmap != null)
+        bitmap.recycle();
+      bitmap = null;
+      sysCanvas = null;
+    }
+  }
+
+  @NonNull
+  private final Canvas iinkCanvas;
+  private final float frameBudgetMs;
+  private final AtomicInteger contentGeneration = new AtomicInteger(0);
+  // idle handlers only run once per idle period, posting wakes the queue up to render the next strip
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable resumeRunnable = this::registerIdleHandler;
+
+  private int margin;
+  private int maxMemoryBytes;
+
+  // surface used for compositing (complete) and surface being prepared
+  @NonNull
+  private Surface front = new Surface();
+  @NonNull
+  private Surface back = new Surface();
+  private boolean frontValid = false;
+  private boolean backInProgress = false;
+  private int backNextTop = 0;
+  private int stripHeight = INITIAL_STRIP_HEIGHT;
+
+  @Nullable
+  private Renderer renderer = null;
+  private int viewWidth = 0;
+  private int viewHeight = 0;
+  private boolean idleHandlerRegistered = false;
+  // no preparation while the user interacts with the view (e.g. pen down)
+  private boolean isSuspended = false;
+  private int effectiveMargin = 0;
+
+  /**
+   * @param iinkCanvas the canvas used to render into the offscreen surfaces, owned by this prefetcher.
+   * @param frameBudgetMs the time (in ms) that can be spent rendering during a single idle slot.
+   */
+  public ViewportPrefetcher(@NonNull Canvas iinkCanvas, float frameBudgetMs)
+  {
+    this.iinkCanvas = iinkCanvas;
+    this.frameBudgetMs = frameBudgetMs;
+    this.margin = 0;
+    this.maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+    iinkCanvas.setClearOnStartDraw(true);
+    // the same canvas renders every strip: keep the extra brush renderer until release
+    iinkCanvas.setKeepGLRenderer(true);
+  }
+
+  /**
+   * @param margin the extra area (in pixels) prefetched on each side of the viewport, 0 disables prefetching.
+   */
+  public void setMargin(int margin)
+  {
+    this.margin = Math.max(0, margin);
+    cancel();
+    frontValid = false;
+  }
+
+  public int getMargin()
+  {
+    return margin;
+  }
+
+  /**
+   * @return the margin actually prefetched, lower than {@link #getMargin()} when the surfaces do not fit the memory
+   * budget with the requested margin.
+   */
+  public int getEffectiveMargin()
+  {
+    return effectiveMargin;
+  }
+
+  /**
+   * @param maxMemoryBytes the maximum memory used by the offscreen surfaces (both of them).
+   */
+  public void setMaxMemoryBytes(int maxMemoryBytes)
+  {
+    if (this.maxMemoryBytes == maxMemoryBytes)
+      return;
+    this.maxMemoryBytes = maxMemoryBytes;
+    cancel();
+    frontValid = false;
+  }
+
+  /**
+   * @return the memory used by both offscreen surfaces for the given view size and margin.
+   */
+  public static long getRequiredMemoryBytes(int viewWidth, int viewHeight, int margin)
+  {
+    return 2L * BYTES_PER_PIXEL * (viewWidth + 2L * margin) * (viewHeight + 2L * margin);
+  }
+
+  /**
+   * Signals that the content changed, so that prepared surfaces can no longer be composited.
+   * Can be called from any thread.
+   */
+  public void invalidateContent()
+  {
+    contentGeneration.incrementAndGet();
+  }
+
+  /**
+   * Stops the ongoing preparation (typically when input starts), the last complete surface is kept.
+   */
+  public void cancel()
+  {
+    backInProgress = false;
+    handler.removeCallbacks(resumeRunnable);
+    unregisterIdleHandler();
+  }
+
+  /**
+   * Suspends preparation while the user interacts with the view (e.g. from pointer down to pointer up), so that it
+   * does not compete with input and capture rendering. Resuming schedules the preparation again if needed.
+   */
+  public void setSuspended(boolean suspended)
+  {
+    if (isSuspended == suspended)
+      return;
+    isSuspended = suspended;
+    if (suspended)
+      cancel();
+    else if (renderer != null && !renderer.isClosed())
+      schedule(renderer, viewWidth, viewHeight);
+  }
+
+  public boolean isSuspended()
+  {
+    return isSuspended;
+  }
+
+  /**
+   * Draws the prepared surface into the given canvas if it still reflects the content at the current viewport.
+   *
+   * @return {@code true} if the viewport was composited, {@code false} if it must be rendered.
+   */
+  public boolean composite(@NonNull android.graphics.Canvas canvas, @NonNull Renderer renderer)
+  {
+    if (!frontValid || front.bitmap == null || front.generation != contentGeneration.get())
+      return false;
+    if (renderer.getViewScale() != front.scale)
+      return false;
+
+    Point offset = renderer.getViewOffset();
+    float dx = offset.x - front.offsetX;
+    float dy = offset.y - front.offsetY;
+    if (Math.abs(dx) > front.margin || Math.abs(dy) > front.margin)
+      return false;
+
+    canvas.drawBitmap(front.bitmap, -front.margin - dx, -front.margin - dy, null);
+    return true;
+  }
+
+  /**
+   * Schedules the preparation of the area around the current viewport, if needed.
+   */
+  public void schedule(@NonNull Renderer renderer, int viewWidth, int viewHeight)
+  {
+    if (margin <= 0 || viewWidth <= 0 || viewHeight <= 0)
+      return;
+
+    if (this.renderer != renderer || this.viewWidth != viewWidth || this.viewHeight != viewHeight)
+    {
+      this.renderer = renderer;
+      this.viewWidth = viewWidth;
+      this.viewHeight = viewHeight;
+      frontValid = false;
+      backInProgress = false;
+    }
+
+    if (isSuspended || backInProgress || !needsRecentering(renderer))
+      return;
+
+    if (startBackRendering(renderer))
+      registerIdleHandler();
+  }
+
+  /**
+   * Releases the offscreen surfaces and the rendering resources.
+   */
+  public void release()
+  {
+    cancel();
+    frontValid = false;
+    front.recycle();
+    back.recycle();
+    iinkCanvas.destroy();
+    renderer = null;
+  }
+
+  @Override
+  public boolean queueIdle()
+  {
+    Renderer renderer = this.renderer;
+    android.graphics.Canvas sysCanvas = back.sysCanvas;
+    if (!backInProgress || renderer == null || sysCanvas == null || renderer.isClosed())
+    {
+      backInProgress = false;
+      idleHandlerRegistered = false;
+      return false;
+    }
+
+    // all strips must be rendered with the same view transform and content
+    Point offset = renderer.getViewOffset();
+    if (offset.x != back.offsetX || offset.y != back.offsetY || renderer.getViewScale() != back.scale
+        || back.generation != contentGeneration.get())
+    {
+      // restart from the current viewport
+      if (startBackRendering(renderer))
+        return resumeLater();
+      idleHandlerRegistered = false;
+      return false;
+    }
+
+    int surfaceWidth = viewWidth + 2 * back.margin;
+    int surfaceHeight = viewHeight + 2 * back.margin;
+    int height = Math.min(stripHeight, surfaceHeight - backNextTop);
+
+    long start = SystemClock.elapsedRealtimeNanos();
+    iinkCanvas.setCanvas(sysCanvas);
+    iinkCanvas.setViewOrigin(-back.margin, -back.margin);
+    renderer.drawModel(-back.margin, backNextTop - back.margin, surfaceWidth, height, iinkCanvas);
+    float elapsedMs = (SystemClock.elapsedRealtimeNanos() - start) / NS_IN_A_MS;
+
+    // adapt the strip height so that a single strip fits in the frame budget
+    if (elapsedMs > frameBudgetMs)
+      stripHeight = Math.max(MIN_STRIP_HEIGHT, stripHeight / 2);
+    else if (elapsedMs < frameBudgetMs / 4)
+      stripHeight = Math.min(surfaceHeight, stripHeight * 2);
+
+    backNextTop += height;
+    if (backNextTop < surfaceHeight)
+      return resumeLater();
+
+    // swap surfaces
+    Surface previousFront = front;
+    front = back;
+    back = previousFront;
+    frontValid = true;
+    backInProgress = false;
+    idleHandlerRegistered = false;
+    return false;
+  }
+
+  private boolean resumeLater()
+  {
+    idleHandlerRegistered = false;
+    handler.post(resumeRunnable);
+    return false;
+  }
+
+  private boolean startBackRendering(@NonNull Renderer renderer)
+  {
+    backInProgress = false;
+    int effectiveMargin = effectiveMargin(viewWidth, viewHeight);
+    if (effectiveMargin != this.effectiveMargin)
+    {
+      this.effectiveMargin = effectiveMargin;
+      if (effectiveMargin <= 0)
+        Log.w(TAG, "Prefetch disabled: " + viewWidth + "x" + viewHeight + " surfaces need more than " + maxMemoryBytes + " bytes");
+      else if (effectiveMargin < margin)
+        Log.w(TAG, "Prefetch margin reduced from " + margin + " to " + effectiveMargin + " px to fit " + maxMemoryBytes + " bytes");
+    }
+    if (effectiveMargin <= 0)
+      return false;
+
+    Point offset = renderer.getViewOffset();
+    back.offsetX = offset.x;
+    back.offsetY = offset.y;
+    back.scale = renderer.getViewScale();
+    back.margin = effectiveMargin;
+    back.generation = contentGeneration.get();
+    if (!back.ensureSize(viewWidth + 2 * effectiveMargin, viewHeight + 2 * effectiveMargin))
+      return false;
+
+    backNextTop = 0;
+    backInProgress = true;
+    return true;
+  }
+
+  private boolean needsRecentering(@NonNull Renderer renderer)
+  {
+    if (!frontValid || front.generation != contentGeneration.get() || renderer.getViewScale() != front.scale)
+      return true;
+    Point offset = renderer.getViewOffset();
+    float threshold = front.margin / 2f;
+    return Math.abs(offset.x - front.offsetX) > threshold || Math.abs(offset.y - front.offsetY) > threshold;
+  }
+
+  private int effectiveMargin(int viewWidth, int viewHeight)
+  {
+    // both surfaces must fit in the memory budget, reduce the margin until they do
+    if (getRequiredMemoryBytes(viewWidth, viewHeight, 0) > maxMemoryBytes)
+      return 0; // not even the viewport fits: prefetching would only cost memory
+    int effectiveMargin = margin;
+    while (effectiveMargin > 0 && getRequiredMemoryBytes(viewWidth, viewHeight, effectiveMargin) > maxMemoryBytes)
+      effectiveMargin /= 2;
+    return effectiveMargin;
+  }
+
+  private void registerIdleHandler()
+  {
+    if (!idleHandlerRegistered)
+    {
+      Looper.myQueue().addIdleHandler(this);
+      idleHandlerRegistered = true;
+    }
+  }
+
+  private void unregisterIdleHandler()
+  {
+    if (idleHandlerRegistered)
+    {
+      Looper.myQueue().removeIdleHandler(this);
+      idleHandlerRegistered = false;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import java.util.HashMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Word level diff, finding which words of a new word list are kept from an old one.
+ * <p>
+ * Labels are first mapped to integer ids, then common prefix and suffix are trimmed and the remaining range is
+ * split recursively around the middle snake of the Myers O(ND) algorithm. Memory is linear in the number of words,
+ * time is O((N + M) D) where D is the number of inserted and removed words, so a small edit of a long paragraph
+ * stays cheap.
+ */
+final class WordDiff
+{
+  private final int[] oldIds;
+  private final int[] ids;
+  private final boolean[] matched;
+
+  private WordDiff(@NonNull int[] oldIds, @NonNull int[] ids, @NonNull boolean[] matched)
+  {
+    this.oldIds = oldIds;
+    this.ids = ids;
+    this.matched = matched;
+  }
+
+  /**
+   * Finds a longest common subsequence of two word lists.
+   *
+   * @param oldLabels the labels of the previous words.
+   * @param labels    the labels of the new words.
+   * @param matched   output, {@code matched[j]} is set when {@code labels[j]} belongs to the common subsequence,
+   *                  its length must be at least {@code labels.length}.
+   */
+  static void matchWords(@NonNull String[] oldLabels, @NonNull String[] labels, @NonNull boolean[] matched)
+  {
+    HashMap<String, Integer> labelIds = new HashMap<>();
+    int[] oldIds = toIds(oldLabels, labelIds);
+    int[] ids = toIds(labels, labelIds);
+    for (int j = 0; j < labels.length; ++j)
+      matched[j] = false;
+    new WordDiff(oldIds, ids, matched).diff(0, oldIds.length, 0, ids.length);
+  }
+
+  @NonNull
+  private static int[] toIds(@NonNull String[] labels, @NonNull HashMap<String, Integer> labelIds)
+  {
+    int[] ids = new int[labels.length];
+    for (int i = 0; i < labels.length; ++i)
+    {
+      Integer id = labelIds.get(labels[i]);
+      if (id == null)
+      {
+        id = labelIds.size();
+        labelIds.put(labels[i], id);
+      }
+      ids[i] = id;
+    }
+    return ids;
+  }
+
+  private void diff(int oldStart, int oldEnd, int start, int end)
+  {
+    while (oldStart < oldEnd && start < end && oldIds[oldStart] == ids[start])
+    {
+      matched[start] = true;
+      ++oldStart;
+      ++start;
+    }
+    while (oldStart < oldEnd && start < end && oldIds[oldEnd - 1] == ids[end - 1])
+    {
+      matched[end - 1] = true;
+      --oldEnd;
+      --end;
+    }
+    if (oldStart == oldEnd || start == end)
+      return; // only insertions or removals left
+
+    bisect(oldStart, oldEnd, start, end);
+  }
+
+  /**
+   * Finds the middle snake of the shortest edit script by running the algorithm from both ends at once, then
+   * diffs both halves independently.
+   */
+  private void bisect(int oldStart, int oldEnd, int start, int end)
+  {
+    int oldLength = oldEnd - oldStart;
+    int length = end - start;
+    int maxD = (oldLength + length + 1) / 2;
+    int offset = maxD;
+    int vLength = 2 * maxD + 2;
+    // furthest x reached on each diagonal k = x - y, forward and backward
+    int[] v1 = new int[vLength];
+    int[] v2 = new int[vLength];
+    for (int k = 0; k < vLength; ++k)
+    {
+      v1[k] = -1;
+      v2[k] = -1;
+    }
+    v1[offset + 1] = 0;
+    v2[offset + 1] = 0;
+    int delta = oldLength - length;
+    // with an odd delta the paths overlap on a forward step, with an even one on a backward step
+    boolean isFront = (delta % 2 != 0);
+    // diagonals that went past the edges are not explored anymore
+    int k1Start = 0;
+    int k1End = 0;
+    int k2Start = 0;
+    int k2End = 0;
+    for (int d = 0; d < maxD; ++d)
+    {
+      for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2)
+      {
+        int k1Offset = offset + k1;
+        int x1;
+        if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1]))
+          x1 = v1[k1Offset + 1];
+        else
+          x1 = v1[k1Offset - 1] + 1;
+        int y1 = x1 - k1;
+        while (x1 < oldLength && y1 < length && oldIds[oldStart + x1] == ids[start + y1])
+        {
+          ++x1;
+          ++y1;
+        }
+        v1[k1Offset] = x1;
+        if (x1 > oldLength)
+        {
+          k1End += 2;
+        }
+        else if (y1 > length)
+        {
+          k1Start += 2;
+        }
+        else if (isFront)
+        {
+          int k2Offset = offset + delta - k1;
+          if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1 && x1 >= oldLength - v2[k2Offset])
+          {
+            split(oldStart, oldEnd, start, end, x1, y1);
+            return;
+          }
+        }
+      }
+
+      for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2)
+      {
+        int k2Offset = offset + k2;
+        int x2;
+        if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1]))
+          x2 = v2[k2Offset + 1];
+        else
+          x2 = v2[k2Offset - 1] + 1;
+        int y2 = x2 - k2;
+        while (x2 < oldLength && y2 < length && oldIds[oldEnd - 1 - x2] == ids[end - 1 - y2])
+        {
+          ++x2;
+          ++y2;
+        }
+        v2[k2Offset] = x2;
+        if (x2 > oldLength)
+        {
+          k2End += 2;
+        }
+        else if (y2 > length)
+        {
+          k2Start += 2;
+        }
+        else if (!isFront)
+        {
+          int k1Offset = offset + delta - k2;
+          if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1)
+          {
+            int x1 = v1[k1Offset];
+            int y1 = offset + x1 - k1Offset;
+            if (x1 >= oldLength - x2)
+            {
+              split(oldStart, oldEnd, start, end, x1, y1);
+              return;
+            }
+          }
+        }
+      }
+    }
+    // no common word
+  }
+
+  private void split(int oldStart, int oldEnd, int start, int end, int x, int y)
+  {
+    diff(oldStart, oldStart + x, start, start + y);
+    diff(oldStart + x, oldEnd, start + y, end);
+  }
+}
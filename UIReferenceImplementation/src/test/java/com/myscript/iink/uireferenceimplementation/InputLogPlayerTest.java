@@ -0,0 +1,111 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.PointerType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.myscript.iink.uireferenceimplementation.InputLogReaderTest.record;
+import static org.junit.Assert.assertEquals;
+
+public class InputLogPlayerTest
+{
+  private static final int[] PEN = { InputLogPlayer.TOOL_TYPE_STYLUS };
+
+  /**
+   * Fake editor, logging the received events.
+   */
+  private static final class FakeEditor implements IPointerEventConsumer
+  {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void pointerDown(float x, float y, long t, float f, float tilt, float orientation, PointerType pointerType, int pointerId)
+    {
+      events.add("down " + x + " " + t + " " + pointerType + " " + pointerId);
+    }
+
+    @Override
+    public void pointerMove(float x, float y, long t, float f, float tilt, float orientation, PointerType pointerType, int pointerId)
+    {
+      events.add("move " + x + " " + t + " " + pointerType + " " + pointerId);
+    }
+
+    @Override
+    public void pointerUp(float x, float y, long t, float f, float tilt, float orientation, PointerType pointerType, int pointerId)
+    {
+      events.add("up " + x + " " + t + " " + pointerType + " " + pointerId);
+    }
+
+    @Override
+    public void pointerCancel(int pointerId)
+    {
+      events.add("cancel " + pointerId);
+    }
+  }
+
+  @Test
+  public void replaysStrokeWithHistory() throws IOException
+  {
+    List<InputLogReader.Record> records = new ArrayList<>();
+    records.add(record(InputLogPlayer.ACTION_DOWN, 0, 0, new long[]{ 0 }, new int[]{ 2 }, PEN));
+    records.add(record(InputLogPlayer.ACTION_MOVE, 0, 0, new long[]{ 4, 8 }, new int[]{ 2 }, PEN));
+    records.add(record(InputLogPlayer.ACTION_UP, 0, 0, new long[]{ 12, 16 }, new int[]{ 2 }, PEN));
+
+    FakeEditor editor = new FakeEditor();
+    // through the recorder and the reader, as a recorded log
+    try (InputLogReader reader = new InputLogReader(new ByteArrayInputStream(InputLogReaderTest.write(records))))
+    {
+      assertEquals(3, new InputLogPlayer(editor).play(reader));
+    }
+
+    assertEquals(Arrays.asList(
+        "down 0.0 0 PEN 2",
+        "move 40.0 4 PEN 2",
+        "move 80.0 8 PEN 2",
+        "move 120.0 12 PEN 2",
+        "up 160.0 16 PEN 2"), editor.events);
+  }
+
+  @Test
+  public void replaysFirstPointerOnly()
+  {
+    int[] fingers = { InputLogPlayer.TOOL_TYPE_FINGER, InputLogPlayer.TOOL_TYPE_FINGER };
+    FakeEditor editor = new FakeEditor();
+    InputLogPlayer player = new InputLogPlayer(editor);
+    player.play(record(InputLogPlayer.ACTION_DOWN, 0, 0, new long[]{ 0 }, new int[]{ 0 }, new int[]{ InputLogPlayer.TOOL_TYPE_FINGER }));
+    // ACTION_POINTER_DOWN of a second finger
+    player.play(record(5, 1, 0, new long[]{ 5 }, new int[]{ 0, 1 }, fingers));
+    player.play(record(InputLogPlayer.ACTION_MOVE, 0, 0, new long[]{ 10 }, new int[]{ 1, 0 }, fingers));
+    player.play(record(InputLogPlayer.ACTION_CANCEL, 0, 0, new long[]{ 15 }, new int[]{ 1, 0 }, fingers));
+    // moves without a stroke are ignored
+    player.play(record(InputLogPlayer.ACTION_MOVE, 0, 0, new long[]{ 20 }, new int[]{ 0 }, new int[]{ InputLogPlayer.TOOL_TYPE_FINGER }));
+
+    assertEquals(Arrays.asList(
+        "down 0.0 0 TOUCH 0",
+        // the first pointer, second in the record
+        "move 101.0 10 TOUCH 0",
+        "cancel 0"), editor.events);
+  }
+
+  @Test
+  public void cancelsUnfinishedStrokeOnDown()
+  {
+    FakeEditor editor = new FakeEditor();
+    InputLogPlayer player = new InputLogPlayer(editor);
+    player.play(record(InputLogPlayer.ACTION_DOWN, 0, 0, new long[]{ 0 }, new int[]{ 0 }, PEN));
+    player.play(record(InputLogPlayer.ACTION_DOWN, 0, 50, new long[]{ 50 }, new int[]{ 1 }, new int[]{ InputLogPlayer.TOOL_TYPE_ERASER }));
+
+    assertEquals(Arrays.asList(
+        "down 0.0 0 PEN 0",
+        "cancel 0",
+        "down 0.0 50 ERASER 1"), editor.events);
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InputLogReaderTest
+{
+  @Test
+  public void readsRecordedRecords() throws IOException
+  {
+    List<InputLogReader.Record> records = new ArrayList<>();
+    records.add(record(InputLogPlayer.ACTION_DOWN, 0, 1000, new long[]{ 1000 }, new int[]{ 0 }, new int[]{ InputLogPlayer.TOOL_TYPE_STYLUS }));
+    records.add(record(InputLogPlayer.ACTION_MOVE, 0, 1000, new long[]{ 1004, 1008, 1012 }, new int[]{ 0 }, new int[]{ InputLogPlayer.TOOL_TYPE_STYLUS }));
+    // two pointers, as during a pinch
+    records.add(record(5, 1, 2000, new long[]{ 2010, 2020 }, new int[]{ 0, 3 }, new int[]{ InputLogPlayer.TOOL_TYPE_FINGER, InputLogPlayer.TOOL_TYPE_FINGER }));
+
+    List<InputLogReader.Record> readRecords = new ArrayList<>();
+    try (InputLogReader reader = new InputLogReader(new ByteArrayInputStream(write(records))))
+    {
+      InputLogReader.Record record;
+      while ((record = reader.read()) != null)
+        readRecords.add(record);
+      assertNull(reader.read());
+    }
+
+    assertEquals(records.size(), readRecords.size());
+    for (int r = 0; r < records.size(); ++r)
+    {
+      InputLogReader.Record expected = records.get(r);
+      InputLogReader.Record actual = readRecords.get(r);
+      assertEquals(expected.actionMasked, actual.actionMasked);
+      assertEquals(expected.actionIndex, actual.actionIndex);
+      assertEquals(expected.source, actual.source);
+      assertEquals(expected.downTime, actual.downTime);
+      assertEquals(expected.pointerCount, actual.pointerCount);
+      assertArrayEquals(expected.pointerIds, actual.pointerIds);
+      assertArrayEquals(expected.toolTypes, actual.toolTypes);
+      assertArrayEquals(expected.times, actual.times);
+      assertArrayEquals(expected.xs, actual.xs, 0);
+      assertArrayEquals(expected.ys, actual.ys, 0);
+      assertArrayEquals(expected.pressures, actual.pressures, 0);
+      assertArrayEquals(expected.tilts, actual.tilts, 0);
+      assertArrayEquals(expected.orientations, actual.orientations, 0);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherStreams() throws IOException
+  {
+    new InputLogReader(new ByteArrayInputStream(new byte[]{ 'P', 'K', 3, 4, 0, 0 }));
+  }
+
+  static byte[] write(List<InputLogReader.Record> records) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputRecorder recorder = new InputRecorder(out))
+    {
+      for (InputLogReader.Record record : records)
+        recorder.record(record);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @return a record whose sample values derive from the sample and pointer indices.
+   */
+  static InputLogReader.Record record(int actionMasked, int actionIndex, long downTime, long[] times, int[] pointerIds, int[] toolTypes)
+  {
+    InputLogReader.Record record = new InputLogReader.Record();
+    record.actionMasked = actionMasked;
+    record.actionIndex = actionIndex;
+    record.source = 0x5002; // stylus
+    record.downTime = downTime;
+    record.pointerCount = pointerIds.length;
+    record.pointerIds = pointerIds;
+    record.toolTypes = toolTypes;
+    record.times = times;
+    int count = times.length * pointerIds.length;
+    record.xs = new float[count];
+    record.ys = new float[count];
+    record.pressures = new float[count];
+    record.tilts = new float[count];
+    record.orientations = new float[count];
+    for (int s = 0; s < times.length; ++s)
+    {
+      for (int p = 0; p < pointerIds.length; ++p)
+      {
+        int i = s * pointerIds.length + p;
+        record.xs[i] = 10 * (times[s] - downTime) + p;
+        record.ys[i] = 100 + p;
+        record.pressures[i] = 0.5f;
+        record.tilts[i] = 0.1f * p;
+        record.orientations[i] = -0.25f;
+      }
+    }
+    return record;
+  }
+}
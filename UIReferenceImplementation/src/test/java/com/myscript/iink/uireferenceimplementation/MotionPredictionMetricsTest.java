@@ -0,0 +1,65 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MotionPredictionMetricsTest
+{
+  @Test
+  public void measuresSeveralPendingPredictions()
+  {
+    MotionPredictionMetrics metrics = new MotionPredictionMetrics();
+    metrics.startStroke();
+    // the pen moves along x at 1 px/ms
+    metrics.addSample(0, 0, 0);
+    // predictions several samples ahead, all pending at once
+    metrics.addPrediction(8, 10, 0);
+    metrics.addSample(4, 4, 0);
+    metrics.addPrediction(12, 12, 0);
+    metrics.addPrediction(16, 14, 0);
+    assertEquals(0, metrics.getCount());
+
+    // reaches the first two predictions: ahead by 2 px, then exact
+    metrics.addSample(12, 12, 0);
+    assertEquals(2, metrics.getCount());
+    assertEquals(1, metrics.getMeanError(), 1e-4);
+    assertEquals(2, metrics.getMaxError(), 1e-4);
+    assertEquals(0.5f, metrics.getOvershootRatio(), 1e-4);
+
+    // behind by 2 px, interpolated between the samples at 12 and 20 ms
+    metrics.addSample(20, 20, 0);
+    assertEquals(3, metrics.getCount());
+    assertEquals(4f / 3, metrics.getMeanError(), 1e-4);
+    assertEquals(1f / 3, metrics.getOvershootRatio(), 1e-4);
+  }
+
+  @Test
+  public void laterPredictionReplacesPendingOnesNotBeforeIt()
+  {
+    MotionPredictionMetrics metrics = new MotionPredictionMetrics();
+    metrics.startStroke();
+    metrics.addSample(0, 0, 0);
+    metrics.addPrediction(10, 100, 0);
+    // predicted again for an earlier time, e.g. after a shorter horizon
+    metrics.addPrediction(8, 8, 0);
+    metrics.addSample(20, 20, 0);
+    assertEquals(1, metrics.getCount());
+    assertEquals(0, metrics.getMaxError(), 1e-4);
+  }
+
+  @Test
+  public void newStrokeDiscardsPredictionsBeyondTheEnd()
+  {
+    MotionPredictionMetrics metrics = new MotionPredictionMetrics();
+    metrics.startStroke();
+    metrics.addSample(0, 0, 0);
+    metrics.addPrediction(10, 10, 0);
+    metrics.startStroke();
+    metrics.addSample(100, 500, 500);
+    metrics.addSample(110, 510, 500);
+    assertEquals(0, metrics.getCount());
+  }
+}
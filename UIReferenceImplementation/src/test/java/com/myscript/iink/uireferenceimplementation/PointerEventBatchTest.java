@@ -0,0 +1,124 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import com.myscript.iink.PointerEvent;
+import com.myscript.iink.PointerEventType;
+import com.myscript.iink.PointerType;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PointerEventBatchTest
+{
+  private static final int MAX_SIZE = 64;
+
+  @Test
+  public void obtainReusesArraysAndEvents()
+  {
+    PointerEventBatch batch = new PointerEventBatch(false);
+    // grow once to the largest batch, afterwards no allocation is expected
+    PointerEvent[] largest = batch.obtain(MAX_SIZE);
+    Map<PointerEvent, Boolean> events = new IdentityHashMap<>();
+    for (PointerEvent event : largest)
+      events.put(event, Boolean.TRUE);
+    assertEquals(MAX_SIZE, events.size());
+
+    PointerEvent[][] arrays = new PointerEvent[MAX_SIZE + 1][];
+    Random random = new Random(42);
+    for (int cycle = 0; cycle < 1000; ++cycle)
+    {
+      int size = random.nextInt(MAX_SIZE + 1);
+      PointerEvent[] array = batch.obtain(size);
+      assertEquals(size, array.length);
+      if (arrays[size] != null)
+        assertSame(arrays[size], array);
+      arrays[size] = array;
+
+      for (int i = 0; i < size; ++i)
+      {
+        // the same event objects are shared by all lengths
+        assertSame(largest[i], array[i]);
+        batch.set(i, PointerEventType.MOVE, cycle, i, cycle * 1000L + i, 0.5f, PointerType.PEN, 1);
+      }
+      for (int i = 0; i < size; ++i)
+      {
+        assertEquals(cycle, array[i].x, 0);
+        assertEquals(i, array[i].y, 0);
+        assertTrue(events.containsKey(array[i]));
+      }
+    }
+  }
+
+  /**
+   * Steady-state writing, once the batch has grown to the largest history, must not allocate per event.
+   */
+  @Test
+  public void steadyStateDoesNotAllocate()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+    PointerEventBatch batch = new PointerEventBatch(true);
+    // warm up: grow the batch and let the JIT compile the loop
+    writeStrokes(batch, 20000);
+
+    int eventCount = 200000;
+    long threadId = Thread.currentThread().getId();
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    int written = writeStrokes(batch, eventCount);
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertEquals(eventCount, written);
+    // a few bytes may come from the measurement itself, nothing proportional to the events
+    assertTrue("allocated " + allocated + " bytes for " + eventCount + " events", allocated < 1024);
+  }
+
+  // fills batches of varying history sizes, as motion events do while writing
+  private static int writeStrokes(PointerEventBatch batch, int eventCount)
+  {
+    int written = 0;
+    int size = 1;
+    while (written < eventCount)
+    {
+      size = size % MAX_SIZE + 1;
+      int count = Math.min(size, eventCount - written);
+      PointerEvent[] events = batch.obtain(count);
+      for (int i = 0; i < count; ++i)
+        batch.set(i, PointerEventType.MOVE, i, written, written + i, 0.5f, 0.1f, 0.2f, PointerType.PEN, 1);
+      written += events.length;
+    }
+    return written;
+  }
+
+  @Test
+  public void growKeepsEventsAndValues()
+  {
+    PointerEventBatch batch = new PointerEventBatch(true);
+    PointerEvent[] small = batch.obtain(3);
+    for (int i = 0; i < small.length; ++i)
+      batch.set(i, PointerEventType.MOVE, i, i, i, 1, 0.25f, 0.75f, PointerType.PEN, 0);
+
+    PointerEvent[] large = batch.obtain(10);
+    for (int i = 0; i < small.length; ++i)
+    {
+      assertSame(small[i], large[i]);
+      assertEquals(i, large[i].x, 0);
+      assertEquals(0.25f, large[i].tilt, 0);
+      assertEquals(0.75f, large[i].orientation, 0);
+    }
+    // arrays obtained before growing stay valid
+    assertSame(small, batch.obtain(3));
+  }
+}
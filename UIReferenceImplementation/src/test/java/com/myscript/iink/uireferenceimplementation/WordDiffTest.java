@@ -0,0 +1,246 @@
+// Copyright @ MyScript. All rights reserved.
+
+package com.myscript.iink.uireferenceimplementation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WordDiffTest
+{
+  private static final String[] VOCABULARY = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "\n", " " };
+
+  @Test
+  public void matchesReferenceLcs()
+  {
+    Random random = new Random(42);
+    for (int run = 0; run < 2000; ++run)
+    {
+      String[] oldLabels = randomWords(random, random.nextInt(40), 1 + random.nextInt(VOCABULARY.length));
+      String[] labels = edit(random, oldLabels);
+      boolean[] matched = new boolean[labels.length];
+      WordDiff.matchWords(oldLabels, labels, matched);
+      assertEditScript(oldLabels, labels, matched);
+    }
+  }
+
+  @Test
+  public void matchesSmallEdits()
+  {
+    String[] oldLabels = { "the", "quick", "brown", "fox" };
+    boolean[] matched = new boolean[5];
+    WordDiff.matchWords(oldLabels, new String[]{ "the", "quick", "red", "brown", "fox" }, matched);
+    assertArrayEquals(new boolean[]{ true, true, false, true, true }, matched);
+
+    matched = new boolean[3];
+    WordDiff.matchWords(oldLabels, new String[]{ "the", "brown", "fox" }, matched);
+    assertArrayEquals(new boolean[]{ true, true, true }, matched);
+
+    matched = new boolean[2];
+    WordDiff.matchWords(new String[0], new String[]{ "the", "fox" }, matched);
+    assertArrayEquals(new boolean[]{ false, false }, matched);
+  }
+
+  /**
+   * Worst case for the O((N + M) D) algorithm: a long paragraph replaced by mostly different words, as after
+   * converting or replacing a whole block.
+   */
+  @Test
+  public void mostlyDifferentLongParagraph()
+  {
+    int count = 8000;
+    String[] oldLabels = new String[count];
+    String[] labels = new String[count];
+    Random random = new Random(7);
+    for (int i = 0; i < count; ++i)
+    {
+      oldLabels[i] = "old" + i;
+      // one word in ten is kept
+      labels[i] = random.nextInt(10) == 0 ? oldLabels[i] : "new" + i;
+    }
+    boolean[] matched = new boolean[count];
+    WordDiff.matchWords(oldLabels, labels, matched);
+
+    int expected = 0;
+    for (int i = 0; i < count; ++i)
+    {
+      if (labels[i].equals(oldLabels[i]))
+        ++expected;
+    }
+    int matchedCount = 0;
+    for (boolean m : matched)
+    {
+      if (m)
+        ++matchedCount;
+    }
+    assertEquals(expected, matchedCount);
+  }
+
+  /**
+   * Compares to the previous word-level Levenshtein matrix on growing paragraphs, with the few edits of a stroke:
+   * the matrix is quadratic, the diff grows with the number of edits.
+   */
+  @Test
+  public void fasterThanLevenshteinOnGrowingParagraphs()
+  {
+    int[] sizes = { 250, 500, 1000, 2000 };
+    StringBuilder report = new StringBuilder("words, WordDiff (us), Levenshtein (us):");
+    long wordDiffNs = 0;
+    long levenshteinNs = 0;
+    for (int size : sizes)
+    {
+      Random random = new Random(size);
+      String[] oldLabels = randomWords(random, size, VOCABULARY.length);
+      String[] labels = edit(random, oldLabels);
+      boolean[] matched = new boolean[labels.length];
+      boolean[] modified = new boolean[labels.length];
+
+      wordDiffNs = medianNs(() -> WordDiff.matchWords(oldLabels, labels, matched));
+      levenshteinNs = medianNs(() -> levenshteinModified(oldLabels, labels, modified));
+      report.append(' ').append(size).append(", ").append(wordDiffNs / 1000).append(", ").append(levenshteinNs / 1000).append(';');
+    }
+    assertTrue(report.toString(), wordDiffNs < levenshteinNs);
+  }
+
+  private static long medianNs(Runnable diff)
+  {
+    // the first runs warm up the JIT
+    for (int i = 0; i < 3; ++i)
+      diff.run();
+    long[] durations = new long[7];
+    for (int i = 0; i < durations.length; ++i)
+    {
+      long start = System.nanoTime();
+      diff.run();
+      durations[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(durations);
+    return durations[durations.length / 2];
+  }
+
+  /**
+   * The previous implementation of the SmartGuide word matching: a full Levenshtein matrix, then a backward
+   * traversal marking the words that are not aligned with an identical previous word.
+   */
+  private static void levenshteinModified(String[] oldLabels, String[] labels, boolean[] modified)
+  {
+    int len1 = oldLabels.length;
+    int len2 = labels.length;
+    int[][] d = new int[len1 + 1][len2 + 1];
+    int i;
+    int j;
+    for (i = 1; i <= len1; ++i)
+      d[i][0] = i;
+    for (i = 1; i <= len2; ++i)
+      d[0][i] = i;
+    for (i = 1; i <= len1; ++i)
+    {
+      for (j = 1; j <= len2; ++j)
+      {
+        int d1 = d[i - 1][j] + 1;
+        int d2 = d[i][j - 1] + 1;
+        int d3 = d[i - 1][j - 1] + (oldLabels[i - 1].equals(labels[j - 1]) ? 0 : 1);
+        d[i][j] = Math.min(Math.min(d1, d2), d3);
+      }
+    }
+
+    for (j = 0; j < len2; ++j)
+      modified[j] = true;
+    if (len1 > 0 && len2 > 0)
+    {
+      i = len1;
+      j = len2;
+      while (j > 0)
+      {
+        int d01 = d[i][j - 1];
+        int d11 = (i > 0) ? d[i - 1][j - 1] : -1;
+        int d10 = (i > 0) ? d[i - 1][j] : -1;
+        if (d11 >= 0 && d11 <= d10 && d11 <= d01)
+        {
+          --i;
+          --j;
+        }
+        else if (d10 >= 0 && d10 <= d11 && d10 <= d01)
+        {
+          --i;
+        }
+        else
+        {
+          --j;
+        }
+        if (i < len1 && j < len2)
+          modified[j] = !oldLabels[i].equals(labels[j]);
+      }
+    }
+  }
+
+  private static String[] randomWords(Random random, int count, int vocabularySize)
+  {
+    String[] labels = new String[count];
+    for (int i = 0; i < count; ++i)
+      labels[i] = VOCABULARY[random.nextInt(vocabularySize)];
+    return labels;
+  }
+
+  // random insertions, removals and replacements
+  private static String[] edit(Random random, String[] labels)
+  {
+    List<String> edited = new ArrayList<>(Arrays.asList(labels));
+    int editCount = random.nextInt(6);
+    for (int e = 0; e < editCount; ++e)
+    {
+      int action = random.nextInt(3);
+      String word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+      if (action == 0 || edited.isEmpty())
+        edited.add(random.nextInt(edited.size() + 1), word);
+      else if (action == 1)
+        edited.remove(random.nextInt(edited.size()));
+      else
+        edited.set(random.nextInt(edited.size()), word);
+    }
+    return edited.toArray(new String[0]);
+  }
+
+  /**
+   * The matched words must be a common subsequence of both lists, as long as the longest one.
+   */
+  private static void assertEditScript(String[] oldLabels, String[] labels, boolean[] matched)
+  {
+    int i = 0;
+    int matchedCount = 0;
+    for (int j = 0; j < labels.length; ++j)
+    {
+      if (!matched[j])
+        continue;
+      while (i < oldLabels.length && !oldLabels[i].equals(labels[j]))
+        ++i;
+      assertTrue("matched word " + j + " is not in the previous words", i < oldLabels.length);
+      ++i;
+      ++matchedCount;
+    }
+    assertEquals(referenceLcsLength(oldLabels, labels), matchedCount);
+  }
+
+  private static int referenceLcsLength(String[] a, String[] b)
+  {
+    int[][] lengths = new int[a.length + 1][b.length + 1];
+    for (int i = a.length - 1; i >= 0; --i)
+    {
+      for (int j = b.length - 1; j >= 0; --j)
+      {
+        if (a[i].equals(b[j]))
+          lengths[i][j] = lengths[i + 1][j + 1] + 1;
+        else
+          lengths[i][j] = Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+      }
+    }
+    return lengths[0][0];
+  }
+}